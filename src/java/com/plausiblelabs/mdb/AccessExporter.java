@@ -29,21 +29,39 @@
 
 package com.plausiblelabs.mdb;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.DataType;
 import com.healthmarketscience.jackcess.Database;
 import com.healthmarketscience.jackcess.Index;
 import com.healthmarketscience.jackcess.Table;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 
 /**
  * Handles export of an MS Access database to an SQLite file.
@@ -57,10 +75,393 @@ public class AccessExporter {
      */
     public AccessExporter (Database db) {
         this.db = db;
+        this.accessFile = null;
+        this.memoryMapped = false;
+    }
+
+    /**
+     * Create a new exporter for the MS Access database file at the given
+     * path. The database is opened read-only. Unlike {@link #AccessExporter(Database)},
+     * exporters created from a file may export tables in parallel.
+     *
+     * @param accessFile Path to an Access database.
+     * @throws IOException
+     */
+    public AccessExporter (File accessFile) throws IOException {
+        this(accessFile, false);
+    }
+
+    /**
+     * Create a new exporter for the MS Access database file at the given
+     * path, optionally reading it through a read-only memory mapping of the
+     * whole file. Page reads are then copied from the mapping rather than
+     * read with a system call each.
+     *
+     * @param accessFile Path to an Access database.
+     * @param memoryMapped If true, map the file into memory.
+     * @throws IOException
+     */
+    public AccessExporter (File accessFile, boolean memoryMapped) throws IOException {
+        this.accessFile = accessFile;
+        this.memoryMapped = memoryMapped;
+        this.db = openAccessFile();
+    }
+
+    /**
+     * Set the default number of rows to collect with addBatch() before
+     * each executeBatch() flush. A batch size of 1 (the default) executes
+     * each INSERT individually.
+     *
+     * @param batchSize Number of rows per batch; must be at least 1.
+     */
+    public void setBatchSize (final int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Override the batch size for a single MS Access table.
+     *
+     * @param tableName MS Access table name
+     * @param batchSize Number of rows per batch; must be at least 1.
+     */
+    public void setBatchSize (final String tableName, final int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        tableBatchSizes.put(tableName, batchSize);
+    }
+
+    /**
+     * Return the batch size used when populating the named table.
+     *
+     * @param tableName MS Access table name
+     */
+    public int getBatchSize (final String tableName) {
+        final Integer size = tableBatchSizes.get(tableName);
+        if (size != null)
+            return size;
+        return batchSize;
+    }
+
+    /**
+     * Set the default policy for committing while tables are populated.
+     * Defaults to {@link CommitPolicy#NEVER}, which exports the entire database
+     * in a single transaction.
+     *
+     * @param commitPolicy The commit policy.
+     */
+    public void setCommitPolicy (final CommitPolicy commitPolicy) {
+        this.commitPolicy = commitPolicy;
+    }
+
+    /**
+     * Override the commit policy for a single MS Access table.
+     *
+     * @param tableName MS Access table name
+     * @param commitPolicy The commit policy.
+     */
+    public void setCommitPolicy (final String tableName, final CommitPolicy commitPolicy) {
+        tableCommitPolicies.put(tableName, commitPolicy);
+    }
+
+    /**
+     * Return the commit policy used when populating the named table.
+     *
+     * @param tableName MS Access table name
+     */
+    public CommitPolicy getCommitPolicy (final String tableName) {
+        final CommitPolicy policy = tableCommitPolicies.get(tableName);
+        if (policy != null)
+            return policy;
+        return commitPolicy;
+    }
+
+    /**
+     * Set whether several rows are inserted per statement. The number of rows
+     * per statement is derived from the column count and SQLite's host parameter
+     * limit. When enabled, the batch size is ignored.
+     *
+     * @param multiRowInserts If true, use multi-row INSERT statements.
+     */
+    public void setMultiRowInserts (final boolean multiRowInserts) {
+        this.multiRowInserts = multiRowInserts;
+    }
+
+    /**
+     * Set whether index creation is deferred until all tables have been
+     * populated. Building each index once over the loaded rows is
+     * considerably cheaper than updating it on every INSERT.
+     *
+     * Parallel exports always build indexes after loading each shard.
+     *
+     * @param deferIndexes If true, indexes are created after the data load.
+     */
+    public void setDeferIndexes (final boolean deferIndexes) {
+        this.deferIndexes = deferIndexes;
+    }
+
+    /**
+     * Set the number of worker threads used to populate tables. With more
+     * than one worker, each worker exports a subset of the tables into its
+     * own temporary SQLite shard file, and the shards are merged into the
+     * target database as they complete. In this mode, the schema and each
+     * shard's data are committed separately. Each shard builds its tables'
+     * indexes once loaded, concurrently with the other shards, and the
+     * merge copies the finished index entries in key order.
+     *
+     * @param workerCount Number of workers; must be at least 1.
+     * @throws IllegalStateException If workerCount is greater than 1 and this
+     * exporter was not created from a file.
+     */
+    public void setWorkerCount (final int workerCount) {
+        if (workerCount < 1)
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workerCount);
+        if (workerCount > 1 && accessFile == null)
+            throw new IllegalStateException("Parallel export requires an exporter created from an Access file");
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Set the directory in which temporary shard files are created
+     * during a parallel export. Defaults to the system temporary directory.
+     *
+     * @param shardDirectory Directory for shard files, or null for the default.
+     */
+    public void setShardDirectory (final File shardDirectory) {
+        this.shardDirectory = shardDirectory;
+    }
+
+    /**
+     * Set whether JDBC batches are collected in a columnar {@link RowBatch}
+     * of primitive arrays, and bound once full, rather than bound row by row.
+     * Multi-row inserts always collect their rows this way.
+     *
+     * @param columnarBatches If true, collect batches by column.
+     */
+    public void setColumnarBatches (final boolean columnarBatches) {
+        this.columnarBatches = columnarBatches;
+    }
+
+    /**
+     * Set whether sqlite_stat1 is written from statistics collected while the
+     * tables are populated, rather than gathered by scanning the output with
+     * ANALYZE. Row counts are exact; the number of distinct values of each
+     * index column prefix is estimated.
+     *
+     * @param estimateStatistics If true, write estimated statistics.
+     */
+    public void setEstimateStatistics (final boolean estimateStatistics) {
+        this.estimateStatistics = estimateStatistics;
+    }
+
+    /**
+     * Set the time budget for running ANALYZE once the export is complete, so
+     * that the query planner has statistics. Tables are analyzed one at a time,
+     * and no further tables are started once the budget is spent. Defaults to
+     * 0, which skips the step.
+     *
+     * @param analyzeBudget Time budget in milliseconds.
+     */
+    public void setAnalyzeBudget (final long analyzeBudget) {
+        this.analyzeBudget = analyzeBudget;
+    }
+
+    /**
+     * Set the time budget for running PRAGMA optimize once the export is
+     * complete. The step is reported as unsupported on SQLite versions
+     * older than 3.18.0. Defaults to 0, which skips the step.
+     *
+     * @param optimizeBudget Time budget in milliseconds.
+     */
+    public void setOptimizeBudget (final long optimizeBudget) {
+        this.optimizeBudget = optimizeBudget;
+    }
+
+    /**
+     * Set the time budget for running VACUUM once the export is complete.
+     * VACUUM can not be interrupted; a run exceeding its budget is reported
+     * as over budget. Defaults to 0, which skips the step.
+     *
+     * @param vacuumBudget Time budget in milliseconds.
+     */
+    public void setVacuumBudget (final long vacuumBudget) {
+        this.vacuumBudget = vacuumBudget;
+    }
+
+    /**
+     * Set the memory budget for building the database in memory when exporting
+     * with {@link #export(File)}. If the estimated output size fits, the export
+     * runs against an in-memory SQLite database, which is written to the file
+     * once complete. Defaults to 0, which always writes to the file directly.
+     *
+     * @param memoryBudget Maximum estimated output size, in bytes, to build in memory.
+     */
+    public void setMemoryBudget (final long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Set whether BINARY and OLE values are deduplicated. Each distinct value is
+     * stored once, keyed by its SHA-1 digest, in the mdb_blobs table, and the
+     * column holds its id. A view named after each such table with a "_view"
+     * suffix presents the table in its original layout.
+     *
+     * @param deduplicateBlobs If true, deduplicate blobs.
+     */
+    public void setDeduplicateBlobs (final boolean deduplicateBlobs) {
+        this.deduplicateBlobs = deduplicateBlobs;
+    }
+
+    /**
+     * Set whether MS Access primary keys are declared in the SQLite tables,
+     * in place of a separate UNIQUE index. A single-column LONG autonumber key
+     * is declared as INTEGER PRIMARY KEY, and stored as the rowid; any other
+     * key is declared as a PRIMARY KEY table constraint.
+     *
+     * @param declarePrimaryKeys If true, declare primary keys.
+     */
+    public void setDeclarePrimaryKeys (final boolean declarePrimaryKeys) {
+        this.declarePrimaryKeys = declarePrimaryKeys;
+    }
+
+    /**
+     * Set whether each table is loaded in primary key order. Rows are read through
+     * the primary key index; tables without one are read in storage order. A
+     * single-column LONG autonumber key is declared as INTEGER PRIMARY KEY, so
+     * that the rows are appended in rowid order, and its UNIQUE index is omitted.
+     *
+     * @param primaryKeyOrder If true, load rows in primary key order.
+     */
+    public void setPrimaryKeyOrder (final boolean primaryKeyOrder) {
+        this.primaryKeyOrder = primaryKeyOrder;
+    }
+
+    /**
+     * Set whether rows are read through a Jackcess Cursor by column position
+     * into a reused buffer, instead of allocating a Map for every row.
+     *
+     * @param cursorReads If true, read rows through a Cursor.
+     */
+    public void setCursorReads (final boolean cursorReads) {
+        this.cursorReads = cursorReads;
+    }
+
+    /**
+     * Set the number of decoded rows that may be queued between the
+     * Jackcess reader thread and the SQLite writer. With a depth of 0
+     * (the default), rows are read and inserted on the same thread.
+     *
+     * @param pipelineDepth Queue capacity in rows, or 0 to disable pipelining.
+     */
+    public void setPipelineDepth (final int pipelineDepth) {
+        if (pipelineDepth < 0)
+            throw new IllegalArgumentException("Pipeline depth must not be negative: " + pipelineDepth);
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Set whether BINARY and OLE values are written as their raw bytes.
+     * By default, each value is stored as the Java serialization of its
+     * byte[], which is larger and costly to produce; raw output is
+     * recommended for new exports.
+     *
+     * @param rawBinary If true, store BINARY and OLE values as-is.
+     */
+    public void setRawBinary (final boolean rawBinary) {
+        this.rawBinary = rawBinary;
+    }
+
+    /**
+     * Set the listener notified of per-table export progress.
+     *
+     * @param listener The listener, or null to disable notifications.
+     */
+    public void setListener (final ExportListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Return the timing and allocation report of the most recent export.
+     */
+    public ExportReport getReport () {
+        return report;
+    }
+
+    /**
+     * Set the tracer notified of table, batch, index and commit spans.
+     *
+     * @param tracer The tracer, or null to disable tracing.
+     */
+    public void setTracer (final ExportTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Set the SQLite PRAGMA profile applied for the duration of the export.
+     * Defaults to {@link PragmaProfile#DEFAULT}.
+     *
+     * @param pragmaProfile The profile to apply.
+     */
+    public void setPragmaProfile (final PragmaProfile pragmaProfile) {
+        this.pragmaProfile = pragmaProfile;
     }
     
+    /**
+     * Return the table's primary key index, or null if it has none.
+     * 
+     * @param table MS Access table
+     */
+    static Index getPrimaryKey (final Table table) {
+        for (Index index : table.getIndexes()) {
+            if (index.isPrimaryKey())
+                return index;
+        }
+        return null;
+    }
+
+    /**
+     * Return the table's primary key column if it may be stored as the SQLite
+     * rowid: the key must be a single LONG autonumber column. Otherwise, null.
+     * 
+     * @param table MS Access table
+     */
+    static Column getRowidColumn (final Table table) {
+        final Index primaryKey = getPrimaryKey(table);
+        if (primaryKey == null || primaryKey.getColumns().size() != 1)
+            return null;
+
+        final Column column = primaryKey.getColumns().get(0).getColumn();
+        if (column.getType() != DataType.LONG || !column.isAutoNumber())
+            return null;
+        return column;
+    }
+
+    /**
+     * Return true if the index is a primary key that createTable declares
+     * in the SQLite table.
+     * 
+     * @param index MS Access index
+     */
+    boolean isDeclaredPrimaryKey (final Index index) {
+        if (!index.isPrimaryKey())
+            return false;
+        return declarePrimaryKeys || (primaryKeyOrder && getRowidColumn(index.getTable()) != null);
+    }
+
+    /**
+     * Open a new read-only handle on the Access file.
+     * 
+     * @throws IOException
+     */
+    private Database openAccessFile () throws IOException {
+        if (memoryMapped)
+            return MappedDatabase.open(accessFile);
+        return Database.open(accessFile, true);
+    }
+
     /* XXX: Manual escaping of identifiers. */
-    private String escapeIdentifier (final String identifier) {
+    static String escapeIdentifier (final String identifier) {
         return "'" + identifier.replace("'", "''") + "'";
     }
 
@@ -77,6 +478,10 @@ public class AccessExporter {
         final List<Index> indexes = table.getIndexes();
 
         for (Index index : indexes) {
+            /* Already enforced by the table's declared primary key */
+            if (isDeclaredPrimaryKey(index))
+                continue;
+
             createIndex(index, jdbc);
         }
     }
@@ -84,36 +489,90 @@ public class AccessExporter {
     /**
      * Create an index in an SQLite table for the corresponding index in MS Access
      * 
-     * @param table MS Access table
+     * @param index MS Access index
      * @param jdbc The SQLite database JDBC connection
      * @throws SQLException
      */
-    private void createIndex(final Index index, final Connection jdbc) throws SQLException {
+    void createIndex(final Index index, final Connection jdbc) throws SQLException {
+        final List<String> columnNames = getColumnNames(index);
+        final ExportTracer.Span span = tracer != null ? tracer.beginIndex(index.getTable().getName(), index.getName()) : null;
+        final long start = System.nanoTime();
+        createIndex(index.getTable().getName(), index.getName(), index.isUnique(), columnNames, jdbc);
+        report.addIndex(index.getTable().getName(), index.getName(), (System.nanoTime() - start) / 1000000);
+        if (span != null)
+            span.end(index.getTable().getRowCount(), 0);
+    }
+
+    /**
+     * Return the names of the index's columns, in index order.
+     * 
+     * @param index MS Access index
+     */
+    private static List<String> getColumnNames (final Index index) {
         final List<Index.ColumnDescriptor> columns = index.getColumns();
+        final List<String> columnNames = new ArrayList<String>(columns.size());
+
+        for (Index.ColumnDescriptor column : columns)
+            columnNames.add(column.getName());
+        return columnNames;
+    }
+
+    /**
+     * Create an index in an SQLite table.
+     * 
+     * @param tableName MS Access table name
+     * @param accessIndexName MS Access index name
+     * @param unique If true, create a UNIQUE index
+     * @param columnNames Indexed column names, in order
+     * @param jdbc The SQLite database JDBC connection
+     * @throws SQLException
+     */
+    void createIndex(final String tableName, final String accessIndexName, final boolean unique,
+            final List<String> columnNames, final Connection jdbc) throws SQLException
+    {
+        final Statement stmt = jdbc.createStatement();
+        stmt.execute(getCreateIndexStatement(tableName, accessIndexName, unique, columnNames));
+        stmt.close();
+    }
+
+    /**
+     * Return the CREATE INDEX statement for the corresponding index in MS Access.
+     * 
+     * @param index MS Access index
+     */
+    String getCreateIndexStatement (final Index index) {
+        return getCreateIndexStatement(index.getTable().getName(), index.getName(), index.isUnique(), getColumnNames(index));
+    }
+
+    /**
+     * Return the CREATE INDEX statement for an SQLite index.
+     * 
+     * @param tableName MS Access table name
+     * @param accessIndexName MS Access index name
+     * @param unique If true, create a UNIQUE index
+     * @param columnNames Indexed column names, in order
+     */
+    private String getCreateIndexStatement (final String tableName, final String accessIndexName, final boolean unique,
+            final List<String> columnNames)
+    {
         final StringBuilder stmtBuilder = new StringBuilder();
         
         /* Create the statement */
-        final String tableName = index.getTable().getName();
-        final String indexName = tableName + "_" + index.getName();
-        final String uniqueString = index.isUnique() ? "UNIQUE" : "";
+        final String indexName = tableName + "_" + accessIndexName;
+        final String uniqueString = unique ? "UNIQUE" : "";
 
         stmtBuilder.append("CREATE "+ uniqueString + " INDEX " + escapeIdentifier(indexName));
         stmtBuilder.append(" ON " + escapeIdentifier(tableName) + " (");
 
-        final int columnCount = columns.size();
+        final int columnCount = columnNames.size();
         for (int i = 0; i < columnCount; i++){
-            final Index.ColumnDescriptor column = columns.get(i);
-
-            stmtBuilder.append(escapeIdentifier(column.getName()));
+            stmtBuilder.append(escapeIdentifier(columnNames.get(i)));
             stmtBuilder.append(" ");
             if (i + 1 < columnCount)
                 stmtBuilder.append(", ");
         }
         stmtBuilder.append(")");
-
-        /* Execute it */
-        final Statement stmt = jdbc.createStatement();
-        stmt.execute(stmtBuilder.toString());
+        return stmtBuilder.toString();
     }
 
     /**
@@ -123,10 +582,29 @@ public class AccessExporter {
      * @param jdbc The SQLite database JDBC connection
      * @throws SQLException 
      */
-    private void createTable (final Table table, final Connection jdbc) throws SQLException {
+    void createTable (final Table table, final Connection jdbc) throws SQLException {
+        final Statement stmt = jdbc.createStatement();
+        try {
+            stmt.execute(getCreateTableStatement(table));
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Return the CREATE TABLE statement for the corresponding MS Access table.
+     * 
+     * @param table MS Access table
+     * @throws SQLException If a column's data type is not supported.
+     */
+    String getCreateTableStatement (final Table table) throws SQLException {
         final List<Column> columns = table.getColumns();
         final StringBuilder stmtBuilder = new StringBuilder();
 
+        /* An autonumber key becomes the rowid; any other primary key is declared as a table constraint */
+        final Column rowidColumn = primaryKeyOrder || declarePrimaryKeys ? getRowidColumn(table) : null;
+        final Index primaryKey = declarePrimaryKeys && rowidColumn == null ? getPrimaryKey(table) : null;
+
         /* Create the statement */
         stmtBuilder.append("CREATE TABLE " + escapeIdentifier(table.getName()) + " (");
         
@@ -140,7 +618,8 @@ public class AccessExporter {
                 /* Blob */
                 case BINARY:
                 case OLE:
-                    stmtBuilder.append("BLOB");
+                    /* Deduplicated blobs are replaced with their blob table id */
+                    stmtBuilder.append(deduplicateBlobs ? "INTEGER" : "BLOB");
                     break;
                 
                 /* Integers */
@@ -178,15 +657,67 @@ public class AccessExporter {
                 default:
                     throw new SQLException("Unhandled MS Acess datatype: " + column.getType());
             }
+
+            if (column == rowidColumn)
+                stmtBuilder.append(" PRIMARY KEY");
             
             if (i + 1 < columnCount)
                 stmtBuilder.append(", ");
         }
+
+        if (primaryKey != null) {
+            final List<Index.ColumnDescriptor> keyColumns = primaryKey.getColumns();
+            stmtBuilder.append(", PRIMARY KEY (");
+            for (int i = 0; i < keyColumns.size(); i++) {
+                stmtBuilder.append(escapeIdentifier(keyColumns.get(i).getName()));
+                if (i + 1 < keyColumns.size())
+                    stmtBuilder.append(", ");
+            }
+            stmtBuilder.append(")");
+        }
         stmtBuilder.append(")");
-        
-        /* Execute it */
+        return stmtBuilder.toString();
+    }
+
+    /**
+     * Create a view presenting a table with deduplicated blobs in its original
+     * layout, with each blob id replaced by the blob. Tables without BINARY or
+     * OLE columns get no view.
+     * 
+     * @param table MS Access table
+     * @param jdbc The SQLite database JDBC connection
+     * @throws SQLException
+     */
+    private void createBlobView (final Table table, final Connection jdbc) throws SQLException {
+        final List<Column> columns = table.getColumns();
+        final StringBuilder stmtBuilder = new StringBuilder();
+        boolean hasBlobs = false;
+
+        stmtBuilder.append("CREATE VIEW " + escapeIdentifier(table.getName() + "_view") + " AS SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            final Column column = columns.get(i);
+            final String columnName = escapeIdentifier(column.getName());
+
+            if (column.getType() == DataType.BINARY || column.getType() == DataType.OLE) {
+                stmtBuilder.append("(SELECT b.data FROM " + escapeIdentifier(BlobStore.TABLE_NAME) +
+                        " b WHERE b.id = t." + columnName + ") AS " + columnName);
+                hasBlobs = true;
+            } else {
+                /* Without an alias, SQLite names the view column t.'name' */
+                stmtBuilder.append("t." + columnName + " AS " + columnName);
+            }
+
+            if (i + 1 < columns.size())
+                stmtBuilder.append(", ");
+        }
+        stmtBuilder.append(" FROM " + escapeIdentifier(table.getName()) + " t");
+
+        if (!hasBlobs)
+            return;
+
         final Statement stmt = jdbc.createStatement();
         stmt.execute(stmtBuilder.toString());
+        stmt.close();
     }
 
     /**
@@ -198,103 +729,227 @@ public class AccessExporter {
     private void createTables (final Connection jdbc) throws IOException, SQLException {
         final Set<String> tableNames = db.getTableNames();
         
+        if (deduplicateBlobs)
+            BlobStore.createTable(jdbc);
+
         for (String tableName : tableNames) {
             Table table = db.getTable(tableName);
             createTable(table, jdbc);
+            if (deduplicateBlobs)
+                createBlobView(table, jdbc);
+
+            /* Parallel exports build their indexes in the shards */
+            if (!deferIndexes && workerCount <= 1)
+                createIndexes(table, jdbc);
+        }
+    }
+
+    /**
+     * Iterate over and create SQLite indexes for every table defined
+     * in the MS Access database.
+     *
+     * @param jdbc The SQLite database JDBC connection
+     */
+    private void createAllIndexes (final Connection jdbc) throws IOException, SQLException {
+        final Set<String> tableNames = db.getTableNames();
+
+        for (String tableName : tableNames) {
+            Table table = db.getTable(tableName);
             createIndexes(table, jdbc);
         }
     }
 
-    
-    private void populateTable (Table table, Connection jdbc) throws SQLException, IOException {
+    /**
+     * Give the (empty) SQLite tables the indexes of every MS Access table,
+     * without recording them in the report. The shard merge copies the shards'
+     * index entries into these indexes in key order, rather than rebuilding them
+     * one row at a time; SQLite only does so when both tables have the same indexes.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     */
+    private void declareAllIndexes (final Connection jdbc) throws IOException, SQLException {
+        for (String tableName : db.getTableNames()) {
+            for (Index index : db.getTable(tableName).getIndexes()) {
+                if (!isDeclaredPrimaryKey(index))
+                    createIndex(tableName, index.getName(), index.isUnique(), getColumnNames(index), jdbc);
+            }
+        }
+    }
+
+    /**
+     * Copy all rows of an MS Access table into the corresponding SQLite table.
+     * 
+     * @param table MS Access table
+     * @param jdbc The SQLite database JDBC connection
+     * @throws SQLException
+     * @throws IOException
+     */
+    void populateTable (Table table, Connection jdbc) throws SQLException, IOException {
         final List<Column> columns = table.getColumns();
         final StringBuilder stmtBuilder = new StringBuilder();
-        final StringBuilder valueStmtBuilder = new StringBuilder();
         
         /* Record the column count */
         final int columnCount = columns.size();
         
-        /* Build the INSERT statement (in two pieces simultaneously) */
+        /* Build the INSERT statement up to the column list; the inserter supplies the values */
         stmtBuilder.append("INSERT INTO " + escapeIdentifier(table.getName()) + " (");
-        valueStmtBuilder.append("(");
         
         for (int i = 0; i < columnCount; i++) {
             final Column column = columns.get(i);
 
-            /* The column name and the VALUE binding */
             stmtBuilder.append(escapeIdentifier(column.getName()));
-            valueStmtBuilder.append("?");
-            
-            if (i + 1 < columnCount) {
+            if (i + 1 < columnCount)
                 stmtBuilder.append(", ");
-                valueStmtBuilder.append(", ");
-            }
         }
-        
-        /* Now append the VALUES piece */
-        stmtBuilder.append(") VALUES ");
-        stmtBuilder.append(valueStmtBuilder);
         stmtBuilder.append(")");
         
-        /* Create the prepared statement */
-        final PreparedStatement prep = jdbc.prepareStatement(stmtBuilder.toString());
+        /* Create the prepared statement(s) */
+        final BlobStore.Writer blobs = blobStore != null ? blobStore.open(jdbc) : null;
+        final ColumnBinder[] binders = ColumnBinder.forColumns(columns, rawBinary, blobs);
+        final int tableBatchSize = getBatchSize(table.getName());
+        final RowInserter inserter = RowInserter.create(jdbc, table.getName(), stmtBuilder.toString(), binders,
+                tableBatchSize, multiRowInserts, columnarBatches, tracer);
+        final CommitPolicy tableCommitPolicy = getCommitPolicy(table.getName());
+        final List<IndexStatistics> tableStatistics = estimateStatistics ? createIndexStatistics(table) : null;
+        final long startTime = System.nanoTime();
+        final long allocatedStart = AllocationCounter.currentThread();
+        long commitNanos = 0;
+        long rowCount = 0;
+        long byteCount = 0;
+        long uncommittedRows = 0;
+        long uncommittedBytes = 0;
+        long nextProgress = startTime + PROGRESS_INTERVAL_NANOS;
+
+        if (listener != null)
+            listener.tableStarted(table.getName(), table.getRowCount());
+        final ExportTracer.Span tableSpan = tracer != null ? tracer.beginTable(table.getName()) : null;
         
+        /* Decode rows on a separate thread if pipelining */
+        final RowReader source = RowReader.forTable(table, cursorReads, primaryKeyOrder);
+        final RowPipeline pipeline = pipelineDepth > 0 ? new RowPipeline(source, table.getName(), pipelineDepth) : null;
+        final RowReader rows = pipeline != null ? pipeline : source;
+
         /* Kick off the insert spree */
-        for (Map<String, Object> row : table) {
-            /* Bind all the column values. We let JDBC do type conversion -- is this correct?. */
-            for (int i = 0; i < columnCount; i++) {
-                final Column column = columns.get(i);
-                final Object value = row.get(column.getName());
-                
-                /* If null, just bail out early and avoid a lot of NULL checking */
-                if (value == null) {
-                    prep.setObject(i + 1, value);
-                    continue;
+        try {
+            Object[] row;
+            while ((row = rows.next()) != null) {
+                if (tableStatistics != null) {
+                    for (IndexStatistics statistics : tableStatistics)
+                        statistics.add(row);
                 }
 
-                /* Perform any conversions */
-                switch (column.getType()) {
-                    case BINARY:
-                    case OLE:
-                        ByteArrayOutputStream bStream = new ByteArrayOutputStream();
-                        ObjectOutputStream oStream = new ObjectOutputStream(bStream);
-                        oStream.writeObject(row.get(column.getName()));
-                        prep.setBytes(i + 1, bStream.toByteArray());
-                        break;
-                    case FLOAT:
-                        prep.setDouble(i+1, (Float) row.get(column.getName()));
-                        break;
-                    case MONEY:
-                        /* Store money as a string. Is there any other valid representation in SQLite? */
-                        prep.setString(i + 1, row.get(column.getName()).toString());
-                        break;
-                    case BOOLEAN:
-                        /* The SQLite JDBC driver does not handle boolean values */
-                        final boolean bool;
-                        final int intVal;
-
-                        /* Determine the value (1/0) */
-                        bool = (Boolean) row.get(column.getName());
-                        if (bool)
-                            intVal = 1;
-                        else
-                            intVal = 0;
-                            
-                        /* Store it */
-                        prep.setInt(i + 1, intVal);
-                        break;
-                    default:
-                        prep.setObject(i + 1, row.get(column.getName()));
-                        break;
+                final int rowBytes = inserter.insert(row);
+                rowCount++;
+                byteCount += rowBytes;
+
+                /* Commit the current chunk if due */
+                uncommittedRows++;
+                uncommittedBytes += rowBytes;
+                if (tableCommitPolicy.shouldCommit(uncommittedRows, uncommittedBytes)) {
+                    inserter.flush();
+                    commitNanos += commitChunk(table, jdbc, uncommittedRows, uncommittedBytes);
+                    uncommittedRows = 0;
+                    uncommittedBytes = 0;
+                }
+
+                /* Stop promptly if a parallel export was abandoned */
+                if ((rowCount & 1023) == 0 && Thread.currentThread().isInterrupted())
+                    throw new InterruptedIOException("Export of table " + table.getName() + " interrupted");
+
+                /* Report progress once per interval, only checking the clock every 1024 rows */
+                if (listener != null && (rowCount & 1023) == 0) {
+                    final long now = System.nanoTime();
+                    if (now >= nextProgress) {
+                        reportProgress(table, rowCount, byteCount, now - startTime);
+                        nextProgress = now + PROGRESS_INTERVAL_NANOS;
+                    }
                 }
-                
             }
-            
-            /* Execute the insert */
-            prep.executeUpdate();
+
+            /* Write any rows held back by the inserter */
+            inserter.flush();
+        } finally {
+            rows.close();
+            inserter.close();
+            if (blobs != null)
+                blobs.close();
         }
-    }
-    
+
+        if (tableSpan != null)
+            tableSpan.end(rowCount, byteCount);
+        if (tableStatistics != null)
+            indexStatistics.addAll(tableStatistics);
+
+        final long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+        if (listener != null)
+            listener.tableFinished(table.getName(), rowCount, byteCount, elapsedMillis);
+
+        /* Include the reader thread's allocations, if pipelining */
+        long allocated = AllocationCounter.since(allocatedStart);
+        if (pipeline != null && allocated >= 0) {
+            final long readerAllocated = pipeline.getReaderAllocatedBytes();
+            allocated = readerAllocated >= 0 ? allocated + readerAllocated : -1;
+        }
+        report.addTable(table.getName(), rowCount, byteCount, elapsedMillis, commitNanos / 1000000, allocated);
+
+        /* Report throughput, so that batch sizes can be tuned per table */
+        if (log.isInfoEnabled()) {
+            final long rowsPerSecond = elapsedMillis > 0 ? (rowCount * 1000) / elapsedMillis : rowCount;
+            log.info(String.format("Populated table %s: %d rows, ~%d bytes in %d ms (%d rows/sec, batch size %d, %s)",
+                    table.getName(), rowCount, byteCount, elapsedMillis, rowsPerSecond, tableBatchSize,
+                    multiRowInserts ? RowInserter.rowsPerStatement(columnCount) + " rows/statement" : "1 row/statement"));
+
+            /* Report which side of the pipeline is limiting */
+            if (pipeline != null) {
+                log.info(String.format("Pipeline for table %s: reader stalled %d ms, writer stalled %d ms, average queue depth %.1f of %d",
+                        table.getName(), pipeline.getReaderStallMillis(), pipeline.getWriterStallMillis(),
+                        pipeline.getAverageQueueDepth(), pipeline.getDepth()));
+            }
+        }
+    }
+
+    /**
+     * Send a progress notification for a table to the listener.
+     *
+     * @param table MS Access table being populated
+     * @param rows Rows written so far
+     * @param bytes Approximate bytes written so far
+     * @param elapsedNanos Time since the table was started
+     */
+    private void reportProgress (final Table table, final long rows, final long bytes, final long elapsedNanos) {
+        final double rowsPerSecond = rows * 1000000000.0 / Math.max(elapsedNanos, 1);
+        final long remainingRows = table.getRowCount() - rows;
+        final long etaMillis = rowsPerSecond > 0 ? (long) (Math.max(remainingRows, 0) * 1000 / rowsPerSecond) : -1;
+
+        listener.tableProgress(table.getName(), rows, bytes, rowsPerSecond, etaMillis);
+    }
+
+    /**
+     * Commit a chunk of a table's rows, logging the time spent in the commit.
+     *
+     * @param table MS Access table being populated
+     * @param jdbc The SQLite database JDBC connection
+     * @param rows Rows in this chunk
+     * @param bytes Approximate bytes in this chunk
+     * @return Time spent in the commit, in nanoseconds
+     * @throws SQLException
+     */
+    private long commitChunk (final Table table, final Connection jdbc, final long rows, final long bytes) throws SQLException {
+        final ExportTracer.Span span = tracer != null ? tracer.beginCommit(table.getName()) : null;
+        final long start = System.nanoTime();
+        jdbc.commit();
+        final long elapsed = System.nanoTime() - start;
+        if (span != null)
+            span.end(rows, bytes);
+
+        if (log.isInfoEnabled()) {
+            log.info(String.format("Committed %d rows, ~%d bytes of table %s in %d ms",
+                    rows, bytes, table.getName(), elapsed / 1000000));
+        }
+
+        return elapsed;
+    }
+
     /**
      * Iterate over all data and populate the SQLite tables
      * @param jdbc The SQLite database JDBC connection
@@ -310,6 +965,203 @@ public class AccessExporter {
         }
     }
     
+    /**
+     * Populate the SQLite tables using multiple workers. Each worker opens its own
+     * handle on the Access file, exports its tables into a temporary SQLite
+     * shard, and each finished shard is merged into the target database with
+     * ATTACH and INSERT ... SELECT. Must be called outside of a transaction.
+     *
+     * @param jdbc The SQLite database JDBC connection
+     * @throws IOException 
+     * @throws SQLException 
+     */
+    private void populateTablesParallel (final Connection jdbc) throws IOException, SQLException {
+        final List<List<String>> partitions = partitionTables(workerCount);
+        final ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        final CompletionService<Shard> completion = new ExecutorCompletionService<Shard>(executor);
+        final List<File> shardFiles = Collections.synchronizedList(new ArrayList<File>());
+
+        try {
+            for (final List<String> tableNames : partitions) {
+                completion.submit(new Callable<Shard>() {
+                    public Shard call () throws IOException, SQLException {
+                        return exportShard(tableNames, partitions.size(), shardFiles);
+                    }
+                });
+            }
+
+            /* Merge the shards in order of completion */
+            for (int i = 0; i < partitions.size(); i++) {
+                final Shard shard;
+                try {
+                    shard = completion.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for shard export");
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                    if (cause instanceof SQLException)
+                        throw (SQLException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    throw (Error) cause;
+                }
+
+                mergeShard(shard, jdbc);
+            }
+        } finally {
+            /* Stop any remaining workers, and wait for them to release their shards */
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            /* Merged shards are already gone; this removes those of a failed export */
+            synchronized (shardFiles) {
+                for (File shardFile : shardFiles)
+                    shardFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Split the Access tables into at most the given number of partitions,
+     * balanced by row count.
+     *
+     * @param partitionCount Maximum number of partitions
+     * @throws IOException
+     */
+    private List<List<String>> partitionTables (final int partitionCount) throws IOException {
+        final List<Table> tables = new ArrayList<Table>();
+        for (String tableName : db.getTableNames())
+            tables.add(db.getTable(tableName));
+
+        /* Assign the largest tables first, each to the least loaded partition */
+        Collections.sort(tables, new Comparator<Table>() {
+            public int compare (Table a, Table b) {
+                return b.getRowCount() - a.getRowCount();
+            }
+        });
+
+        final int count = Math.max(1, Math.min(partitionCount, tables.size()));
+        final List<List<String>> partitions = new ArrayList<List<String>>(count);
+        final long[] loads = new long[count];
+        for (int i = 0; i < count; i++)
+            partitions.add(new ArrayList<String>());
+
+        for (Table table : tables) {
+            int target = 0;
+            for (int i = 1; i < count; i++) {
+                if (loads[i] < loads[target])
+                    target = i;
+            }
+            partitions.get(target).add(table.getName());
+            loads[target] += table.getRowCount();
+        }
+
+        return partitions;
+    }
+
+    /**
+     * Export the given tables into a new temporary SQLite shard file.
+     * Called from worker threads.
+     *
+     * @param tableNames MS Access tables to export
+     * @param shardCount Number of shards exported concurrently
+     * @param shardFiles Receives the shard file, for cleanup should the export fail
+     * @return The populated shard
+     * @throws IOException 
+     * @throws SQLException 
+     */
+    private Shard exportShard (final List<String> tableNames, final int shardCount, final List<File> shardFiles)
+            throws IOException, SQLException
+    {
+        final File shardFile = File.createTempFile("mdb-sqlite-shard", ".db", shardDirectory);
+        shardFiles.add(shardFile);
+
+        /* Jackcess databases are not thread-safe; use a private handle */
+        final Database shardSource = openAccessFile();
+        final Connection shard = DriverManager.getConnection("jdbc:sqlite:" + shardFile.getPath());
+        try {
+            /* Shards are scratch files, and are always bulk loaded */
+            PragmaProfile.BULK_LOAD.apply(shard);
+
+            /* Share the bulk load page cache between the concurrent shards */
+            final int cacheSize = Integer.parseInt(PragmaProfile.BULK_LOAD.getValue("cache_size")) / shardCount;
+            final Statement stmt = shard.createStatement();
+            stmt.execute("PRAGMA cache_size = " + Math.max(cacheSize, MIN_SHARD_CACHE_PAGES));
+            stmt.close();
+            shard.setAutoCommit(false);
+
+            if (deduplicateBlobs)
+                BlobStore.createTable(shard);
+
+            for (String tableName : tableNames) {
+                final Table table = shardSource.getTable(tableName);
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedIOException("Shard export interrupted before table " + tableName);
+                createTable(table, shard);
+                populateTable(table, shard);
+            }
+            shard.commit();
+
+            /* Build the indexes over the loaded data, concurrently with the other shards */
+            final long indexStart = System.nanoTime();
+            for (String tableName : tableNames)
+                createIndexes(shardSource.getTable(tableName), shard);
+            shard.commit();
+
+            if (log.isInfoEnabled()) {
+                log.info(String.format("Built shard indexes for tables %s in %d ms", tableNames,
+                        (System.nanoTime() - indexStart) / 1000000));
+            }
+        } finally {
+            shard.close();
+            shardSource.close();
+        }
+
+        return new Shard(shardFile, tableNames);
+    }
+
+    /**
+     * Copy a shard's tables into the target database and delete the shard.
+     * Must be called outside of a transaction.
+     *
+     * @param shard The shard to merge
+     * @param jdbc The SQLite database JDBC connection
+     * @throws SQLException
+     */
+    private void mergeShard (final Shard shard, final Connection jdbc) throws SQLException {
+        final Statement stmt = jdbc.createStatement();
+        try {
+            /* escapeIdentifier() quoting doubles as a string literal here */
+            stmt.execute("ATTACH DATABASE " + escapeIdentifier(shard.file.getPath()) + " AS shard");
+
+            jdbc.setAutoCommit(false);
+            for (String tableName : shard.tableNames) {
+                stmt.executeUpdate("INSERT INTO main." + escapeIdentifier(tableName) +
+                        " SELECT * FROM shard." + escapeIdentifier(tableName));
+            }
+
+            /* Blob ids are allocated across all shards, and never collide */
+            if (deduplicateBlobs) {
+                stmt.executeUpdate("INSERT INTO main." + escapeIdentifier(BlobStore.TABLE_NAME) +
+                        " SELECT * FROM shard." + escapeIdentifier(BlobStore.TABLE_NAME));
+            }
+            jdbc.commit();
+            jdbc.setAutoCommit(true);
+
+            stmt.execute("DETACH DATABASE shard");
+        } finally {
+            stmt.close();
+            shard.file.delete();
+        }
+    }
+
     /**
      * Export the Access database to the given SQLite JDBC connection.
      * The referenced SQLite database should be empty.
@@ -318,19 +1170,716 @@ public class AccessExporter {
      * @throws SQLException 
      */
     public void export (final Connection jdbc) throws IOException, SQLException {
-        /* Start a transaction */
-        jdbc.setAutoCommit(false);
+        export(jdbc, true);
+    }
+
+    /**
+     * Export the Access database to the given SQLite JDBC connection.
+     * 
+     * @param jdbc A JDBC connection to an empty SQLite database.
+     * @param maintenance If true, run the enabled maintenance steps once the export is committed.
+     * @throws SQLException 
+     */
+    private void export (final Connection jdbc, final boolean maintenance) throws IOException, SQLException {
+        report = new ExportReport();
+        indexStatistics.clear();
+        blobStore = deduplicateBlobs ? new BlobStore() : null;
+
+        /* Apply the PRAGMA profile. This must happen outside of a transaction. */
+        long phaseStart = System.nanoTime();
+        final Map<String, String> previousPragmas = pragmaProfile.apply(jdbc);
+        phaseStart = logPhase("apply pragmas", phaseStart);
+
+        try {
+            /* Start a transaction */
+            jdbc.setAutoCommit(false);
         
-        /* Create the tables */
-        createTables(jdbc);
+            /* Create the tables */
+            createTables(jdbc);
+            if (estimateStatistics) {
+                /* sqlite_stat1 can only be created by ANALYZE, which is cheap while the tables are empty */
+                final Statement stmt = jdbc.createStatement();
+                stmt.execute("ANALYZE");
+                stmt.close();
+            }
+            phaseStart = logPhase("create tables", phaseStart);
         
-        /* Populate the tables */
-        populateTables(jdbc);
+            /* Populate the tables */
+            if (workerCount > 1) {
+                declareAllIndexes(jdbc);
+
+                /* Shards can not be ATTACHed within a transaction */
+                jdbc.commit();
+                jdbc.setAutoCommit(true);
+                populateTablesParallel(jdbc);
+                jdbc.setAutoCommit(false);
+            } else {
+                populateTables(jdbc);
+            }
+            phaseStart = logPhase("populate tables", phaseStart);
+
+            if (blobStore != null && log.isInfoEnabled()) {
+                log.info(String.format("Deduplicated %d blob values into %d blobs, omitting ~%d bytes",
+                        blobStore.getReferenceCount(), blobStore.getBlobCount(), blobStore.getDuplicateBytes()));
+            }
+
+            /* Build the indexes over the loaded data; parallel exports have already done so */
+            if (deferIndexes && workerCount <= 1) {
+                createAllIndexes(jdbc);
+                phaseStart = logPhase("create indexes", phaseStart);
+            }
+
+            if (estimateStatistics) {
+                writeStatistics(jdbc, indexStatistics);
+                phaseStart = logPhase("write statistics", phaseStart);
+            }
         
-        jdbc.commit();
-        jdbc.setAutoCommit(true);
+            final ExportTracer.Span commitSpan = tracer != null ? tracer.beginCommit(null) : null;
+            jdbc.commit();
+            if (commitSpan != null)
+                commitSpan.end(0, 0);
+            jdbc.setAutoCommit(true);
+            phaseStart = logPhase("commit", phaseStart);
+
+            /* Gather statistics and compact the file, if requested */
+            if (maintenance && hasMaintenance()) {
+                runMaintenance(jdbc);
+                phaseStart = logPhase("maintenance", phaseStart);
+            }
+        } finally {
+            /* Roll back a failed export, so that the PRAGMAs can be restored outside of a transaction */
+            if (!jdbc.getAutoCommit()) {
+                jdbc.rollback();
+                jdbc.setAutoCommit(true);
+            }
+
+            /* Undo the PRAGMA profile, even if the export failed */
+            PragmaProfile.restore(jdbc, previousPragmas);
+            logPhase("restore pragmas", phaseStart);
+        }
+    }
+
+    /**
+     * Create statistics collectors for each index of the given MS Access table.
+     * 
+     * @param table MS Access table
+     */
+    private List<IndexStatistics> createIndexStatistics (final Table table) {
+        final List<Column> columns = table.getColumns();
+        final List<IndexStatistics> collectors = new ArrayList<IndexStatistics>();
+
+        for (Index index : table.getIndexes()) {
+            /* A rowid key has no index */
+            if (isDeclaredPrimaryKey(index) && getRowidColumn(table) != null)
+                continue;
+
+            final List<Index.ColumnDescriptor> indexColumns = index.getColumns();
+            final int[] positions = new int[indexColumns.size()];
+            for (int i = 0; i < positions.length; i++)
+                positions[i] = columns.indexOf(indexColumns.get(i).getColumn());
+
+            collectors.add(new IndexStatistics(table.getName(), getColumnNames(index), positions,
+                    index.isUnique() || index.isPrimaryKey()));
+        }
+        return collectors;
+    }
+
+    /**
+     * Replace the contents of sqlite_stat1 with the statistics collected while
+     * populating the tables. Each collector is written for the SQLite indexes,
+     * as listed in sqlite_master, that cover the same columns; a collector
+     * without one, such as that of a primary key SQLite stores as the rowid,
+     * is dropped.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     * @param collectors Statistics collected for each MS Access index
+     * @throws SQLException
+     */
+    static void writeStatistics (final Connection jdbc, final List<IndexStatistics> collectors) throws SQLException {
+        final Statement stmt = jdbc.createStatement();
+        final PreparedStatement prep = jdbc.prepareStatement("INSERT INTO sqlite_stat1 (tbl, idx, stat) VALUES (?, ?, ?)");
+        final Map<String, Map<String, List<String>>> tableIndexes = new HashMap<String, Map<String, List<String>>>();
+        try {
+            stmt.execute("DELETE FROM sqlite_stat1");
+
+            for (IndexStatistics statistics : collectors) {
+                /* As with ANALYZE, empty tables get no statistics */
+                if (statistics.getRowCount() == 0)
+                    continue;
+
+                final String tableName = statistics.getTableName();
+                Map<String, List<String>> indexes = tableIndexes.get(tableName);
+                if (indexes == null) {
+                    indexes = getIndexColumns(jdbc, tableName);
+                    tableIndexes.put(tableName, indexes);
+                }
+
+                final List<String> columnNames = toLowerCase(statistics.getColumnNames());
+                for (Iterator<Map.Entry<String, List<String>>> i = indexes.entrySet().iterator(); i.hasNext();) {
+                    final Map.Entry<String, List<String>> index = i.next();
+                    if (!index.getValue().equals(columnNames))
+                        continue;
+
+                    prep.setString(1, tableName);
+                    prep.setString(2, index.getKey());
+                    prep.setString(3, statistics.getStat());
+                    prep.executeUpdate();
+
+                    /* Write each index once, should two MS Access indexes share its columns */
+                    i.remove();
+                }
+            }
+        } finally {
+            prep.close();
+            stmt.close();
+        }
+    }
+
+    /**
+     * Return the lower-cased column names of each index of an SQLite table,
+     * keyed by index name.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     * @param tableName SQLite table name
+     * @throws SQLException
+     */
+    private static Map<String, List<String>> getIndexColumns (final Connection jdbc, final String tableName) throws SQLException {
+        final Map<String, List<String>> indexes = new HashMap<String, List<String>>();
+        final PreparedStatement prep = jdbc.prepareStatement("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?");
+        final Statement stmt = jdbc.createStatement();
+        try {
+            prep.setString(1, tableName);
+            final ResultSet names = prep.executeQuery();
+            try {
+                while (names.next())
+                    indexes.put(names.getString(1), null);
+            } finally {
+                names.close();
+            }
+
+            for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+                final List<String> columnNames = new ArrayList<String>();
+                final ResultSet info = stmt.executeQuery("PRAGMA index_info(" + escapeIdentifier(index.getKey()) + ")");
+                try {
+                    /* Rows of (seqno, cid, name), in index order */
+                    while (info.next())
+                        columnNames.add(info.getString(3).toLowerCase());
+                } finally {
+                    info.close();
+                }
+                index.setValue(columnNames);
+            }
+        } finally {
+            stmt.close();
+            prep.close();
+        }
+        return indexes;
+    }
+
+    /**
+     * Return a lower-cased copy of the given names; SQLite identifiers are case-insensitive.
+     */
+    private static List<String> toLowerCase (final List<String> names) {
+        final List<String> lowerCased = new ArrayList<String>(names.size());
+        for (String name : names)
+            lowerCased.add(name.toLowerCase());
+        return lowerCased;
+    }
+
+    /**
+     * Return true if any post-export maintenance step is enabled.
+     */
+    private boolean hasMaintenance () {
+        return analyzeBudget > 0 || optimizeBudget > 0 || vacuumBudget > 0;
+    }
+
+    /**
+     * Run the enabled post-export maintenance steps, recording each in the report.
+     * Must be called outside of a transaction.
+     *
+     * @param jdbc The SQLite database JDBC connection
+     * @throws SQLException
+     */
+    private void runMaintenance (final Connection jdbc) throws SQLException {
+        final Statement stmt = jdbc.createStatement();
+        try {
+            if (analyzeBudget > 0)
+                analyze(stmt);
+
+            if (optimizeBudget > 0) {
+                /* PRAGMA optimize was added in SQLite 3.18.0; older versions silently ignore it */
+                final String version = querySingleValue(stmt, "SELECT sqlite_version()");
+                if (compareVersions(version, "3.18.0") < 0) {
+                    addMaintenanceStep("optimize", 0, optimizeBudget, "unsupported by SQLite " + version);
+                } else {
+                    final long start = System.nanoTime();
+                    stmt.execute("PRAGMA optimize");
+                    final long millis = (System.nanoTime() - start) / 1000000;
+                    addMaintenanceStep("optimize", millis, optimizeBudget, millis > optimizeBudget ? "over budget" : "completed");
+                }
+            }
+
+            if (vacuumBudget > 0) {
+                final long start = System.nanoTime();
+                stmt.execute("VACUUM");
+                final long millis = (System.nanoTime() - start) / 1000000;
+                addMaintenanceStep("vacuum", millis, vacuumBudget, millis > vacuumBudget ? "over budget" : "completed");
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Run ANALYZE one table at a time, stopping once the analyze budget is spent.
+     *
+     * @param stmt A statement on the SQLite database
+     * @throws SQLException
+     */
+    private void analyze (final Statement stmt) throws SQLException {
+        final List<String> tableNames = new ArrayList<String>();
+        final ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND " + NOT_INTERNAL);
+        try {
+            while (rs.next())
+                tableNames.add(rs.getString(1));
+        } finally {
+            rs.close();
+        }
+
+        final long start = System.nanoTime();
+        final long deadline = start + analyzeBudget * 1000000;
+        int analyzed = 0;
+        for (String tableName : tableNames) {
+            if (System.nanoTime() >= deadline)
+                break;
+            stmt.execute("ANALYZE " + escapeIdentifier(tableName));
+            analyzed++;
+        }
+
+        final long millis = (System.nanoTime() - start) / 1000000;
+        addMaintenanceStep("analyze", millis, analyzeBudget, analyzed == tableNames.size() ? "completed" :
+                String.format("budget exhausted after %d of %d tables", analyzed, tableNames.size()));
+    }
+
+    /**
+     * Record and log a post-export maintenance step.
+     */
+    private void addMaintenanceStep (final String name, final long millis, final long budgetMillis, final String status) {
+        report.addMaintenanceStep(name, millis, budgetMillis, status);
+        if (log.isInfoEnabled())
+            log.info(String.format("Maintenance step %s: %d ms of %d ms budget, %s", name, millis, budgetMillis, status));
+    }
+
+    /**
+     * Return the first column of the first row of a query.
+     */
+    private static String querySingleValue (final Statement stmt, final String sql) throws SQLException {
+        final ResultSet rs = stmt.executeQuery(sql);
+        try {
+            rs.next();
+            return rs.getString(1);
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Compare two dotted version strings numerically.
+     */
+    private static int compareVersions (final String a, final String b) {
+        final String[] aParts = a.split("\\.");
+        final String[] bParts = b.split("\\.");
+        for (int i = 0; i < Math.max(aParts.length, bParts.length); i++) {
+            final int x = i < aParts.length ? Integer.parseInt(aParts[i]) : 0;
+            final int y = i < bParts.length ? Integer.parseInt(bParts[i]) : 0;
+            if (x != y)
+                return x < y ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Export the Access database to a new SQLite file at the given path.
+     *
+     * If a memory budget is set and the estimated output fits within it, the
+     * database is built in an in-memory SQLite database and then written to
+     * the file in a single pass; any maintenance steps then run on the file.
+     * Otherwise, the export writes to the file directly.
+     *
+     * @param sqliteFile Path to the SQLite database. Should not exist.
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void export (final File sqliteFile) throws IOException, SQLException {
+        final long estimate = memoryBudget > 0 ? estimateOutputBytes() : 0;
+
+        if (memoryBudget <= 0 || estimate > memoryBudget) {
+            if (memoryBudget > 0 && log.isInfoEnabled()) {
+                log.info(String.format("Estimated output of ~%d bytes exceeds the memory budget of %d bytes; writing directly to %s",
+                        estimate, memoryBudget, sqliteFile));
+            }
+
+            final Connection jdbc = DriverManager.getConnection("jdbc:sqlite:" + sqliteFile.getPath());
+            try {
+                export(jdbc);
+            } finally {
+                jdbc.close();
+            }
+            return;
+        }
+
+        final Connection memory = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            /* Maintenance is deferred to the file, where VACUUM and ANALYZE act on the real output */
+            export(memory, false);
+
+            final long start = System.nanoTime();
+            writeToFile(memory, sqliteFile);
+            logPhase("write to disk", start);
+        } finally {
+            memory.close();
+        }
+
+        if (hasMaintenance()) {
+            final long start = System.nanoTime();
+            final Connection disk = DriverManager.getConnection("jdbc:sqlite:" + sqliteFile.getPath());
+            try {
+                runMaintenance(disk);
+            } finally {
+                disk.close();
+            }
+            logPhase("maintenance", start);
+        }
+    }
+
+    /**
+     * Return a conservative estimate of the size of the exported SQLite database.
+     *
+     * Fixed-size values are counted at their largest SQLite encoding, and TEXT
+     * and BINARY values at their declared maximum length. MEMO and OLE values are
+     * stored outside the rows, so their total is bounded by the size of the Access
+     * file when it is known, and otherwise extrapolated from a sample of rows.
+     * Java serialization adds a fixed header to each BINARY and OLE value. The sum
+     * is doubled to cover partially filled b-tree pages, record headers, indexes
+     * and text that grows when re-encoded as UTF-8.
+     *
+     * @throws IOException
+     */
+    long estimateOutputBytes () throws IOException {
+        long total = 0;
+        long longValueBytes = 0;
+
+        for (String tableName : db.getTableNames()) {
+            final Table table = db.getTable(tableName);
+            final List<Column> columns = table.getColumns();
+            final List<Column> longValueColumns = new ArrayList<Column>();
+            long rowBytes = 0;
+
+            for (Column column : columns) {
+                switch (column.getType()) {
+                    case MEMO:
+                    case OLE:
+                        longValueColumns.add(column);
+                        break;
+                    case TEXT:
+                        rowBytes += column.getLength() * 3 / 2;
+                        break;
+                    case BINARY:
+                        rowBytes += column.getLength();
+                        break;
+                    case MONEY:
+                    case NUMERIC:
+                    case GUID:
+                        rowBytes += MAX_STRING_VALUE_BYTES;
+                        break;
+                    default:
+                        rowBytes += MAX_NUMERIC_VALUE_BYTES;
+                        break;
+                }
+
+                /* Each serialized value carries its own stream and class header */
+                if (!rawBinary && (column.getType() == DataType.BINARY || column.getType() == DataType.OLE))
+                    rowBytes += SERIALIZED_VALUE_OVERHEAD;
+            }
+            total += rowBytes * table.getRowCount();
+
+            if (accessFile == null && !longValueColumns.isEmpty())
+                longValueBytes += sampleLongValueBytes(table, longValueColumns);
+        }
+
+        /* The Access file holds every MEMO and OLE value */
+        if (accessFile != null)
+            longValueBytes = accessFile.length();
+
+        return (total + longValueBytes) * OUTPUT_SAFETY_FACTOR;
+    }
+
+    /**
+     * Estimate the total size of a table's MEMO and OLE values from its first rows.
+     *
+     * @param table MS Access table
+     * @param columns The table's MEMO and OLE columns
+     * @throws IOException
+     */
+    private long sampleLongValueBytes (final Table table, final List<Column> columns) throws IOException {
+        final List<Column> allColumns = table.getColumns();
+        final int[] positions = new int[columns.size()];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = allColumns.indexOf(columns.get(i));
+
+        final RowReader rows = RowReader.forTable(table, false, false);
+        long sampledBytes = 0;
+        int sampledRows = 0;
+        try {
+            Object[] row;
+            while (sampledRows < ESTIMATE_SAMPLE_ROWS && (row = rows.next()) != null) {
+                for (int position : positions) {
+                    final Object value = row[position];
+                    if (value instanceof byte[])
+                        sampledBytes += ((byte[]) value).length;
+                    else if (value != null)
+                        sampledBytes += value.toString().length() * 3;
+                }
+                sampledRows++;
+            }
+        } finally {
+            rows.close();
+        }
+
+        if (sampledRows == 0)
+            return 0;
+        return sampledBytes * table.getRowCount() / sampledRows;
+    }
+
+    /**
+     * Copy an exported in-memory SQLite database to a new file. The schema is
+     * created in the file first, so that each table, along with its indexes, is
+     * then copied with SQLite's INSERT ... SELECT * transfer optimization, in
+     * key order. The bundled SQLite predates the backup API and VACUUM INTO.
+     *
+     * @param memory The in-memory SQLite database JDBC connection
+     * @param sqliteFile Path to the SQLite database. Should not exist.
+     * @throws SQLException
+     */
+    private void writeToFile (final Connection memory, final File sqliteFile) throws SQLException {
+        final List<String> schema = new ArrayList<String>();
+        final List<String> tableNames = new ArrayList<String>();
+        final String pageSize;
+        final boolean hasStatistics;
+
+        /* Read the schema, in creation order; internal tables and automatic indexes are recreated by SQLite */
+        final Statement stmt = memory.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT type, name, sql FROM sqlite_master WHERE sql NOT NULL AND " + NOT_INTERNAL + " ORDER BY rowid");
+            try {
+                while (rs.next()) {
+                    schema.add(rs.getString(3));
+                    if (rs.getString(1).equals("table"))
+                        tableNames.add(rs.getString(2));
+                }
+            } finally {
+                rs.close();
+            }
+
+            pageSize = querySingleValue(stmt, "PRAGMA page_size");
+            hasStatistics = Integer.parseInt(querySingleValue(stmt, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'sqlite_stat1'")) > 0;
+        } finally {
+            stmt.close();
+        }
+
+        /* Create the schema in the file */
+        final Connection disk = DriverManager.getConnection("jdbc:sqlite:" + sqliteFile.getPath());
+        try {
+            final Statement diskStmt = disk.createStatement();
+            try {
+                /* Must be set before the first table is created */
+                diskStmt.execute("PRAGMA page_size = " + pageSize);
+
+                disk.setAutoCommit(false);
+                for (String sql : schema)
+                    diskStmt.execute(sql);
+
+                /* sqlite_stat1 can only be created by ANALYZE; create it empty, to be filled with the copy */
+                if (hasStatistics) {
+                    diskStmt.execute("ANALYZE");
+                    diskStmt.execute("DELETE FROM sqlite_stat1");
+                }
+                disk.commit();
+                disk.setAutoCommit(true);
+            } finally {
+                diskStmt.close();
+            }
+        } finally {
+            disk.close();
+        }
+
+        /* Copy the data. This must begin outside of a transaction. */
+        final Statement copyStmt = memory.createStatement();
+        try {
+            /* escapeIdentifier() quoting doubles as a string literal here */
+            copyStmt.execute("ATTACH DATABASE " + escapeIdentifier(sqliteFile.getPath()) + " AS disk");
+
+            memory.setAutoCommit(false);
+            for (String tableName : tableNames) {
+                copyStmt.executeUpdate("INSERT INTO disk." + escapeIdentifier(tableName) +
+                        " SELECT * FROM main." + escapeIdentifier(tableName));
+            }
+            if (hasStatistics)
+                copyStmt.executeUpdate("INSERT INTO disk.sqlite_stat1 SELECT * FROM main.sqlite_stat1");
+            memory.commit();
+            memory.setAutoCommit(true);
+
+            copyStmt.execute("DETACH DATABASE disk");
+        } finally {
+            copyStmt.close();
+        }
+    }
+
+    /**
+     * Record and log the duration of an export phase, tagged with the active PRAGMA
+     * profile so that runs with different profiles can be compared.
+     *
+     * @param phase Name of the completed phase
+     * @param phaseStart System.nanoTime() at the start of the phase
+     * @return System.nanoTime() at the end of the phase
+     */
+    private long logPhase (final String phase, final long phaseStart) {
+        final long now = System.nanoTime();
+        final long millis = (now - phaseStart) / 1000000;
+
+        report.addPhase(phase, millis);
+        if (log.isInfoEnabled())
+            log.info(String.format("Export phase %s: %d ms (pragma profile %s)", phase, millis, pragmaProfile));
+        return now;
+    }
+
+    /** Logger */
+    private static final Log log = LogFactory.getLog(AccessExporter.class);
+
+    /** sqlite_master condition excluding SQLite's own tables and indexes; in LIKE, '_' would match any character */
+    private static final String NOT_INTERNAL = "substr(name, 1, 7) <> 'sqlite_'";
+
+    /** Minimum time between progress notifications */
+    private static final long PROGRESS_INTERVAL_NANOS = 1000000000L;
+
+    /** Largest SQLite encoding of an integer, floating point or date value, with its record header byte */
+    private static final int MAX_NUMERIC_VALUE_BYTES = 9;
+
+    /** Largest string form of a MONEY, NUMERIC or GUID value */
+    private static final int MAX_STRING_VALUE_BYTES = 48;
+
+    /** Java serialization stream and class header preceding a serialized byte[] */
+    private static final int SERIALIZED_VALUE_OVERHEAD = 27;
+
+    /** Covers b-tree page slack, record headers, indexes and UTF-8 growth of the estimated output */
+    private static final int OUTPUT_SAFETY_FACTOR = 2;
+
+    /** Rows read per table to estimate MEMO and OLE sizes when the Access file is not known */
+    private static final int ESTIMATE_SAMPLE_ROWS = 1000;
+
+    /** Lower bound of each shard's page cache, in pages; SQLite's default cache size */
+    private static final int MIN_SHARD_CACHE_PAGES = 2000;
+
+    /**
+     * A temporary SQLite file holding a subset of the exported tables.
+     */
+    private static class Shard {
+        public Shard (File file, List<String> tableNames) {
+            this.file = file;
+            this.tableNames = tableNames;
+        }
+
+        /** Shard database file */
+        public final File file;
+
+        /** Names of the tables exported to this shard */
+        public final List<String> tableNames;
     }
 
     /** MS Access database */
     private final Database db;
+
+    /** Path to the MS Access database, or null if unknown */
+    private final File accessFile;
+
+    /** If true, the Access file is read through a memory mapping */
+    private final boolean memoryMapped;
+
+    /** Number of workers used to populate tables */
+    private int workerCount = 1;
+
+    /** Directory for temporary shard files, or null for the system default */
+    private File shardDirectory = null;
+
+    /** If true, JDBC batches are collected by column */
+    private boolean columnarBatches = false;
+
+    /** If true, sqlite_stat1 is written from statistics collected during population */
+    private boolean estimateStatistics = false;
+
+    /** Index statistics collected during the current export. Synchronized; shard workers add to it concurrently. */
+    private final List<IndexStatistics> indexStatistics = Collections.synchronizedList(new ArrayList<IndexStatistics>());
+
+    /** ANALYZE time budget in milliseconds; 0 to skip */
+    private long analyzeBudget = 0;
+
+    /** PRAGMA optimize time budget in milliseconds; 0 to skip */
+    private long optimizeBudget = 0;
+
+    /** VACUUM time budget in milliseconds; 0 to skip */
+    private long vacuumBudget = 0;
+
+    /** Maximum estimated output size to build in memory; 0 to disable */
+    private long memoryBudget = 0;
+
+    /** If true, BINARY and OLE values are deduplicated */
+    private boolean deduplicateBlobs = false;
+
+    /** Blob side table of the current export; null unless deduplicating */
+    private BlobStore blobStore;
+
+    /** If true, primary keys are declared in the SQLite tables */
+    private boolean declarePrimaryKeys = false;
+
+    /** If true, rows are loaded in primary key order */
+    private boolean primaryKeyOrder = false;
+
+    /** If true, rows are read through a Jackcess Cursor */
+    private boolean cursorReads = false;
+
+    /** Capacity of the reader/writer row queue, or 0 if rows are read on the writer thread */
+    private int pipelineDepth = 0;
+
+    /** Default number of rows per executeBatch() call */
+    private int batchSize = 1;
+
+    /** Per-table batch size overrides, keyed by MS Access table name */
+    private final Map<String, Integer> tableBatchSizes = new HashMap<String, Integer>();
+
+    /** If true, several rows are inserted per statement */
+    private boolean multiRowInserts = false;
+
+    /** Default commit policy */
+    private CommitPolicy commitPolicy = CommitPolicy.NEVER;
+
+    /** Per-table commit policy overrides, keyed by MS Access table name */
+    private final Map<String, CommitPolicy> tableCommitPolicies = new HashMap<String, CommitPolicy>();
+
+    /** If true, indexes are created after all tables have been populated */
+    private boolean deferIndexes = false;
+
+    /** If true, BINARY and OLE values are stored without Java serialization */
+    private boolean rawBinary = false;
+
+    /** Report for the current or most recent export */
+    private ExportReport report = new ExportReport();
+
+    /** Progress listener, or null */
+    private ExportListener listener = null;
+
+    /** Phase tracer, or null */
+    private ExportTracer tracer = null;
+
+    /** PRAGMA profile applied for the duration of the export */
+    private PragmaProfile pragmaProfile = PragmaProfile.DEFAULT;
 }
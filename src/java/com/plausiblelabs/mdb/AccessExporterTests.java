@@ -29,13 +29,30 @@
 
 package com.plausiblelabs.mdb;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
 import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Table;
 
 import org.junit.*;
 
@@ -62,7 +79,1003 @@ public class AccessExporterTests {
 	/* XXX: Test the results using JDBC */
     }
 
+    @Test
+    public void testBatchExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setBatchSize(2);
+        exporter.setBatchSize("closeouts", 3);
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+    }
+
+    @Test
+    public void testDeferredIndexExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setDeferIndexes(true);
+        exporter.export(sqlite);
+
+        final Statement stmt = sqlite.createStatement();
+        final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'economics_ID'");
+        try {
+            rs.next();
+            Assert.assertEquals(1, rs.getInt(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testBulkLoadExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setPragmaProfile(PragmaProfile.BULK_LOAD);
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+
+        /* The profile must have been undone */
+        final Statement stmt = sqlite.createStatement();
+        final ResultSet rs = stmt.executeQuery("PRAGMA synchronous");
+        try {
+            rs.next();
+            Assert.assertEquals(2, rs.getInt(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testFailedBulkLoadExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setPragmaProfile(PragmaProfile.BULK_LOAD);
+
+        /* A conflicting table makes the export fail */
+        final Statement stmt = sqlite.createStatement();
+        stmt.execute("CREATE TABLE " + db.getTableNames().iterator().next() + " (id INTEGER)");
+        try {
+            exporter.export(sqlite);
+            Assert.fail("Export into a conflicting table succeeded");
+        } catch (SQLException e) {
+            /* Expected */
+        }
+
+        /* The profile must have been undone regardless */
+        Assert.assertTrue(sqlite.getAutoCommit());
+        final ResultSet rs = stmt.executeQuery("PRAGMA synchronous");
+        try {
+            rs.next();
+            Assert.assertEquals(2, rs.getInt(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testParallelExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(ACCESS_DB);
+        exporter.setWorkerCount(2);
+        exporter.setDeferIndexes(true);
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+
+        /* Indexes built in the shards must be present, and usable */
+        final Statement stmt = sqlite.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'economics_ID'");
+        try {
+            rs.next();
+            Assert.assertEquals(1, rs.getInt(1));
+        } finally {
+            rs.close();
+        }
+
+        rs = stmt.executeQuery("SELECT COUNT(*) FROM economics WHERE ID > 2");
+        try {
+            rs.next();
+            Assert.assertEquals(3, rs.getInt(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testFailedParallelExport () throws IOException, SQLException {
+        final File shardDirectory = File.createTempFile("mdb-sqlite-shards", "");
+        shardDirectory.delete();
+        shardDirectory.mkdir();
+        try {
+            final AccessExporter exporter = new AccessExporter(ACCESS_DB);
+            exporter.setWorkerCount(2);
+            exporter.setShardDirectory(shardDirectory);
+
+            /* Fail the first table exported by any shard */
+            exporter.setListener(new ExportListener() {
+                public void tableStarted (String tableName, int rowCount) {
+                    throw new IllegalStateException("Failing table " + tableName);
+                }
+                public void tableProgress (String tableName, long rowsWritten, long bytesWritten, double rowsPerSecond, long etaMillis) {}
+                public void tableFinished (String tableName, long rowsWritten, long bytesWritten, long elapsedMillis) {}
+            });
+
+            try {
+                exporter.export(sqlite);
+                Assert.fail("Export with a failing shard succeeded");
+            } catch (IllegalStateException e) {
+                /* Expected */
+            }
+
+            /* Every shard file must have been removed */
+            Assert.assertEquals(0, shardDirectory.list().length);
+        } finally {
+            for (File file : shardDirectory.listFiles())
+                file.delete();
+            shardDirectory.delete();
+        }
+    }
+
+    @Test
+    public void testMemoryMappedExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(ACCESS_DB, true);
+        exporter.setWorkerCount(2);
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+    }
+
+    @Test
+    public void testOutputEstimate () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        final File sqliteFile = File.createTempFile("mdb-sqlite-test", ".db");
+        try {
+            /* Values stored outside the rows, and Java-serialized blobs, dominate the output */
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(0.1);
+            generator.createDatabase(mdbFile, 1, new DataType[] { DataType.MEMO, DataType.OLE, DataType.BINARY, DataType.TEXT }, 9, 200);
+
+            final Database db = Database.open(mdbFile, true);
+            for (boolean rawBinary : new boolean[] { false, true }) {
+                sqliteFile.delete();
+                final AccessExporter exporter = new AccessExporter(db);
+                exporter.setRawBinary(rawBinary);
+                exporter.export(sqliteFile);
+                final long actual = sqliteFile.length();
+
+                /* Both with and without the Access file, the estimate must cover the actual output */
+                Assert.assertTrue(exporter.estimateOutputBytes() >= actual);
+                final AccessExporter fileExporter = new AccessExporter(mdbFile);
+                fileExporter.setRawBinary(rawBinary);
+                Assert.assertTrue(fileExporter.estimateOutputBytes() >= actual);
+            }
+            db.close();
+
+            /* A budget of exactly the estimate builds in memory; one byte less writes directly to disk */
+            final long estimate = new AccessExporter(mdbFile).estimateOutputBytes();
+            for (long budget : new long[] { estimate, estimate - 1 }) {
+                sqliteFile.delete();
+                final AccessExporter exporter = new AccessExporter(mdbFile);
+                exporter.setMemoryBudget(budget);
+                exporter.export(sqliteFile);
+
+                final StringWriter json = new StringWriter();
+                exporter.getReport().writeJson(json);
+                Assert.assertEquals(budget == estimate, json.toString().contains("\"write to disk\""));
+            }
+        } finally {
+            mdbFile.delete();
+            sqliteFile.delete();
+        }
+    }
+
+    @Test
+    public void testInMemoryExport () throws IOException, SQLException {
+        final File sqliteFile = File.createTempFile("mdb-sqlite-test", ".db");
+        final File fallbackFile = File.createTempFile("mdb-sqlite-test", ".db");
+        sqliteFile.delete();
+        fallbackFile.delete();
+        try {
+            final Database db = Database.open(ACCESS_DB, true);
+            AccessExporter exporter = new AccessExporter(ACCESS_DB);
+            exporter.setMemoryBudget(exporter.estimateOutputBytes());
+            exporter.export(sqliteFile);
+
+            /* A budget too small for the estimate writes to disk directly */
+            exporter = new AccessExporter(ACCESS_DB);
+            exporter.setMemoryBudget(1);
+            exporter.export(fallbackFile);
+
+            for (File file : new File[] { sqliteFile, fallbackFile }) {
+                final Connection jdbc = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+                final Statement stmt = jdbc.createStatement();
+                try {
+                    for (String tableName : db.getTableNames()) {
+                        final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM '" + tableName + "'");
+                        rs.next();
+                        Assert.assertEquals(db.getTable(tableName).getRowCount(), rs.getInt(1));
+                        rs.close();
+                    }
+
+                    final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'economics_ID'");
+                    rs.next();
+                    Assert.assertEquals(1, rs.getInt(1));
+                    rs.close();
+                } finally {
+                    stmt.close();
+                    jdbc.close();
+                }
+            }
+        } finally {
+            sqliteFile.delete();
+            fallbackFile.delete();
+        }
+    }
+
+    @Test
+    public void testInMemorySqlitePrefixExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        final File sqliteFile = File.createTempFile("mdb-sqlite-test", ".db");
+        sqliteFile.delete();
+        try {
+            /* Only the literal sqlite_ prefix marks SQLite's own tables */
+            final Database db = Database.create(mdbFile);
+            new MdbGenerator(0).createTable(db, "sqliteData", ALL_TYPES, 3, 10);
+            db.close();
+
+            final AccessExporter exporter = new AccessExporter(mdbFile);
+            exporter.setMemoryBudget(exporter.estimateOutputBytes());
+            exporter.export(sqliteFile);
+
+            final Connection jdbc = DriverManager.getConnection("jdbc:sqlite:" + sqliteFile.getPath());
+            final Statement stmt = jdbc.createStatement();
+            try {
+                final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqliteData");
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals(10, rs.getInt(1));
+                rs.close();
+            } finally {
+                stmt.close();
+                jdbc.close();
+            }
+        } finally {
+            mdbFile.delete();
+            sqliteFile.delete();
+        }
+    }
+
+    @Test
+    public void testMultiRowBlobReferences () throws IOException, SQLException {
+        final Statement stmt = sqlite.createStatement();
+        BlobStore.createTable(sqlite);
+        stmt.execute("CREATE TABLE images (id INTEGER, logo INTEGER)");
+        stmt.close();
+
+        final List<Column> columns = new ArrayList<Column>();
+        columns.add(new ColumnBuilder("id", DataType.LONG).toColumn());
+        columns.add(new ColumnBuilder("logo", DataType.OLE).toColumn());
+
+        /* The partial group is bound again when flushed; its blobs must only be counted once */
+        final BlobStore blobStore = new BlobStore();
+        final BlobStore.Writer blobs = blobStore.open(sqlite);
+        final RowInserter inserter = RowInserter.create(sqlite, "images", "INSERT INTO images (id, logo)",
+                ColumnBinder.forColumns(columns, true, blobs), 1, true, false, null);
+        for (int i = 0; i < 7; i++)
+            inserter.insert(new Object[] { i, i % 2 == 0 ? new byte[] { (byte) (i % 3) } : null });
+        inserter.flush();
+        inserter.close();
+        blobs.close();
+
+        Assert.assertEquals(4, blobStore.getReferenceCount());
+        Assert.assertEquals(3, blobStore.getBlobCount());
+        Assert.assertEquals(1, blobStore.getDuplicateBytes());
+        Assert.assertEquals(7, countRows("images"));
+    }
+
+    @Test
+    public void testMaintenanceExport () throws IOException, SQLException {
+        final File sqliteFile = File.createTempFile("mdb-sqlite-test", ".db");
+        sqliteFile.delete();
+        try {
+            /* Maintenance of an export built in memory must act on the file written to disk */
+            final AccessExporter exporter = new AccessExporter(ACCESS_DB);
+            exporter.setMemoryBudget(exporter.estimateOutputBytes());
+            exporter.setAnalyzeBudget(60000);
+            exporter.setOptimizeBudget(60000);
+            exporter.setVacuumBudget(60000);
+            exporter.export(sqliteFile);
+
+            final StringWriter json = new StringWriter();
+            exporter.getReport().writeJson(json);
+            final int writePhase = json.toString().indexOf("\"name\": \"write to disk\"");
+            Assert.assertTrue(writePhase >= 0);
+            Assert.assertTrue(json.toString().indexOf("\"name\": \"maintenance\"") > writePhase);
+            Assert.assertTrue(json.toString().contains("\"name\": \"analyze\", \"millis\""));
+            Assert.assertTrue(json.toString().contains("\"name\": \"vacuum\", \"millis\""));
+            Assert.assertTrue(json.toString().contains("\"name\": \"optimize\""));
+
+            final Connection jdbc = DriverManager.getConnection("jdbc:sqlite:" + sqliteFile.getPath());
+            final Statement stmt = jdbc.createStatement();
+            try {
+                final ResultSet rs = stmt.executeQuery("SELECT stat FROM sqlite_stat1 WHERE tbl = 'economics' AND idx = 'economics_ID'");
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals("5 1", rs.getString(1));
+                rs.close();
+            } finally {
+                stmt.close();
+                jdbc.close();
+            }
+        } finally {
+            sqliteFile.delete();
+        }
+    }
+
+    @Test
+    public void testSqlDumpExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        final Connection expected = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(0.25);
+            generator.createDatabase(mdbFile, 1, ALL_TYPES, ALL_TYPES.length + 1, 100);
+
+            final Database db = Database.open(mdbFile, true);
+            new AccessExporter(db).export(expected);
+
+            /* Rows per statement and transaction that leave partial groups */
+            final SqlDumpExporter exporter = new SqlDumpExporter(db);
+            exporter.setRowsPerStatement(7);
+            exporter.setRowsPerTransaction(30);
+            final StringWriter dump = new StringWriter();
+            exporter.export(dump);
+            db.close();
+
+            /* Load the dump, as the sqlite3 shell would */
+            final Statement stmt = sqlite.createStatement();
+            for (String sql : dump.toString().split(";\n"))
+                stmt.execute(sql);
+
+            /* The dump must not change any value */
+            final String query = "SELECT * FROM table0 ORDER BY id";
+            final Statement expectedStmt = expected.createStatement();
+            final ResultSet expectedRs = expectedStmt.executeQuery(query);
+            final ResultSet rs = stmt.executeQuery(query);
+            final int columnCount = rs.getMetaData().getColumnCount();
+            int rows = 0;
+            while (expectedRs.next()) {
+                Assert.assertTrue(rs.next());
+                for (int i = 1; i <= columnCount; i++)
+                    Assert.assertEquals(expectedRs.getString(i), rs.getString(i));
+                rows++;
+            }
+            Assert.assertFalse(rs.next());
+            Assert.assertEquals(100, rows);
+
+            rs.close();
+            expectedRs.close();
+            stmt.close();
+            expectedStmt.close();
+        } finally {
+            expected.close();
+            mdbFile.delete();
+        }
+    }
+
+    @Test
+    public void testEstimatedStatisticsExport () throws IOException, SQLException {
+        final AccessExporter exporter = new AccessExporter(ACCESS_DB);
+        exporter.setEstimateStatistics(true);
+        exporter.setWorkerCount(2);
+        exporter.export(sqlite);
+
+        final Statement stmt = sqlite.createStatement();
+        final ResultSet rs = stmt.executeQuery("SELECT stat FROM sqlite_stat1 WHERE tbl = 'economics' AND idx = 'economics_ID'");
+        try {
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals("5 1", rs.getString(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testWriteStatisticsIndexNames () throws SQLException {
+        /* A declared INTEGER key is the rowid whether or not it is an autonumber, and has no index */
+        final Statement stmt = sqlite.createStatement();
+        stmt.execute("CREATE TABLE orders (number INTEGER, customer TEXT, PRIMARY KEY (number))");
+        stmt.execute("CREATE INDEX orders_customer ON orders (customer)");
+        stmt.execute("CREATE TABLE codes (code TEXT, PRIMARY KEY (code))");
+        stmt.execute("ANALYZE");
+
+        final IndexStatistics orderKey = new IndexStatistics("orders", Arrays.asList("Number"), new int[] { 0 }, true);
+        final IndexStatistics orderCustomer = new IndexStatistics("orders", Arrays.asList("Customer"), new int[] { 1 }, false);
+        final IndexStatistics codeKey = new IndexStatistics("codes", Arrays.asList("Code"), new int[] { 0 }, true);
+        for (int i = 0; i < 10; i++) {
+            final Object[] row = new Object[] { i, "customer" + (i % 2) };
+            orderKey.add(row);
+            orderCustomer.add(row);
+            codeKey.add(new Object[] { "code" + i });
+        }
+        AccessExporter.writeStatistics(sqlite, Arrays.asList(orderKey, orderCustomer, codeKey));
+
+        /* Statistics are written under the names SQLite gave the indexes */
+        final ResultSet rs = stmt.executeQuery("SELECT s.tbl, s.idx, s.stat FROM sqlite_stat1 s " +
+                "JOIN sqlite_master m ON m.type = 'index' AND m.name = s.idx AND m.tbl_name = s.tbl ORDER BY s.tbl");
+        try {
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals("codes", rs.getString(1));
+            Assert.assertEquals("10 1", rs.getString(3));
+
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals("orders_customer", rs.getString(2));
+            Assert.assertEquals("10 5", rs.getString(3));
+
+            Assert.assertFalse(rs.next());
+        } finally {
+            rs.close();
+        }
+
+        Assert.assertEquals(2, countRows("sqlite_stat1"));
+        stmt.close();
+    }
+
+    @Test
+    public void testPipelinedExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setPipelineDepth(2);
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+    }
+
+    @Test
+    public void testCursorExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setCursorReads(true);
+        exporter.setPipelineDepth(2);
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+
+        /* Values must land in the right columns */
+        final Statement stmt = sqlite.createStatement();
+        final ResultSet rs = stmt.executeQuery("SELECT SUM(ID) FROM economics");
+        try {
+            rs.next();
+            Assert.assertEquals(15, rs.getInt(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testChunkedCommitExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setBatchSize(2);
+        exporter.setCommitPolicy(new CommitPolicy(3, 0));
+        exporter.setCommitPolicy("closeouts", new CommitPolicy(0, 16));
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+    }
+
+    @Test
+    public void testSyntheticExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        try {
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(0.25);
+            generator.createDatabase(mdbFile, 2, ALL_TYPES, ALL_TYPES.length + 1, 100);
+
+            final Database db = Database.open(mdbFile, true);
+            final AccessExporter exporter = new AccessExporter(db);
+            exporter.setRawBinary(true);
+            exporter.export(sqlite);
+
+            for (String tableName : db.getTableNames())
+                Assert.assertEquals(100, countRows(tableName));
+            db.close();
+        } finally {
+            mdbFile.delete();
+        }
+    }
+
+    @Test
+    public void testRawBinaryExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        try {
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(0.25);
+            generator.createDatabase(mdbFile, 1, new DataType[] { DataType.BINARY, DataType.OLE }, 5, 100);
+
+            final Database db = Database.open(mdbFile, true);
+            final AccessExporter exporter = new AccessExporter(db);
+            exporter.setRawBinary(true);
+            exporter.export(sqlite);
+
+            /* Every value must be the Jackcess bytes, not their Java serialization */
+            final Table table = db.getTable("table0");
+            final List<Column> columns = table.getColumns();
+            final PreparedStatement prep = sqlite.prepareStatement("SELECT * FROM table0 WHERE id = ?");
+            Map<String, Object> row;
+            int rows = 0;
+            while ((row = table.getNextRow()) != null) {
+                prep.setInt(1, (Integer) row.get("id"));
+                final ResultSet rs = prep.executeQuery();
+                try {
+                    Assert.assertTrue(rs.next());
+                    for (int i = 1; i < columns.size(); i++) {
+                        final byte[] expected = (byte[]) row.get(columns.get(i).getName());
+                        Assert.assertArrayEquals(columns.get(i).getName(), expected, rs.getBytes(i + 1));
+                    }
+                } finally {
+                    rs.close();
+                }
+                rows++;
+            }
+            Assert.assertEquals(100, rows);
+            prep.close();
+            db.close();
+        } finally {
+            mdbFile.delete();
+        }
+    }
+
+    @Test
+    public void testMultiRowExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        final Connection expected = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            final int columnCount = ALL_TYPES.length + 1;
+            final int rowsPerStatement = RowInserter.rowsPerStatement(columnCount);
+            final int rowCount = 1000;
+            final long commitRows = 600;
+
+            /* Commit chunks and the table itself must both end with a partial group */
+            Assert.assertTrue(rowCount % rowsPerStatement != 0);
+            Assert.assertTrue(commitRows % rowsPerStatement != 0);
+
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(0.25);
+            generator.createDatabase(mdbFile, 1, ALL_TYPES, columnCount, rowCount);
+
+            final Database db = Database.open(mdbFile, true);
+            new AccessExporter(db).export(expected);
+
+            final AccessExporter exporter = new AccessExporter(db);
+            exporter.setMultiRowInserts(true);
+            exporter.setCommitPolicy(new CommitPolicy(commitRows, 0));
+            exporter.export(sqlite);
+            db.close();
+
+            /* Every value must match a single-row export, including its storage class */
+            assertSameRows(expected, "table0", rowCount);
+        } finally {
+            expected.close();
+            mdbFile.delete();
+        }
+    }
+
+    @Test
+    public void testBinderValues () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        final Connection expected = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(0.25);
+            generator.createDatabase(mdbFile, 1, ALL_TYPES, ALL_TYPES.length + 1, 100);
+
+            final Database db = Database.open(mdbFile, true);
+            final Table table = db.getTable("table0");
+            new AccessExporter(db).export(sqlite);
+
+            /* Insert the same rows with the per-value conversions that preceded the column binders */
+            new AccessExporter(db).createTable(table, expected);
+            final List<Column> columns = table.getColumns();
+            final StringBuilder insert = new StringBuilder("INSERT INTO table0 VALUES (?");
+            for (int i = 1; i < columns.size(); i++)
+                insert.append(", ?");
+            final PreparedStatement prep = expected.prepareStatement(insert.append(")").toString());
+            table.reset();
+            Map<String, Object> row;
+            while ((row = table.getNextRow()) != null) {
+                for (int i = 0; i < columns.size(); i++)
+                    bindLegacyValue(prep, i + 1, columns.get(i), row.get(columns.get(i).getName()));
+                prep.executeUpdate();
+            }
+            prep.close();
+            db.close();
+
+            /* Every column must store the same values, with the same SQLite storage class */
+            final StringBuilder query = new StringBuilder("SELECT ");
+            for (int i = 0; i < columns.size(); i++) {
+                /* Double quotes; a single-quoted name in an expression is a string literal */
+                final String name = "\"" + columns.get(i).getName() + "\"";
+                query.append(i > 0 ? ", " : "").append("typeof(" + name + "), " + name);
+            }
+            query.append(" FROM table0 ORDER BY rowid");
+
+            final Statement expectedStmt = expected.createStatement();
+            final Statement stmt = sqlite.createStatement();
+            final ResultSet expectedRs = expectedStmt.executeQuery(query.toString());
+            final ResultSet rs = stmt.executeQuery(query.toString());
+            final boolean[] sawNull = new boolean[columns.size()];
+            final boolean[] sawValue = new boolean[columns.size()];
+            int rows = 0;
+            while (expectedRs.next()) {
+                Assert.assertTrue(rs.next());
+                for (int i = 0; i < columns.size(); i++) {
+                    final String column = columns.get(i).getName() + " (" + columns.get(i).getType() + ")";
+                    Assert.assertEquals(column, expectedRs.getString(2 * i + 1), rs.getString(2 * i + 1));
+                    Assert.assertEquals(column, expectedRs.getString(2 * i + 2), rs.getString(2 * i + 2));
+                    Assert.assertTrue(column, Arrays.equals(expectedRs.getBytes(2 * i + 2), rs.getBytes(2 * i + 2)));
+                    if (rs.getString(2 * i + 1).equals("null"))
+                        sawNull[i] = true;
+                    else
+                        sawValue[i] = true;
+                }
+                rows++;
+            }
+            Assert.assertFalse(rs.next());
+            Assert.assertEquals(100, rows);
+
+            /* Every type was exercised with and without NULLs; the first column is the autonumber id */
+            for (int i = 1; i < columns.size(); i++) {
+                /* Access booleans are stored in the null mask, and are never NULL */
+                if (columns.get(i).getType() != DataType.BOOLEAN)
+                    Assert.assertTrue(columns.get(i).getName(), sawNull[i]);
+                Assert.assertTrue(columns.get(i).getName(), sawValue[i]);
+            }
+
+            rs.close();
+            expectedRs.close();
+            stmt.close();
+            expectedStmt.close();
+        } finally {
+            expected.close();
+            mdbFile.delete();
+        }
+    }
+
+    /**
+     * Bind a value as AccessExporter did before values were bound through
+     * {@link ColumnBinder}s.
+     */
+    private static void bindLegacyValue (final PreparedStatement prep, final int index, final Column column, final Object value)
+            throws SQLException, IOException
+    {
+        if (value == null) {
+            prep.setObject(index, value);
+            return;
+        }
+
+        switch (column.getType()) {
+            case BINARY:
+            case OLE:
+                final ByteArrayOutputStream bStream = new ByteArrayOutputStream();
+                final ObjectOutputStream oStream = new ObjectOutputStream(bStream);
+                oStream.writeObject(value);
+                prep.setBytes(index, bStream.toByteArray());
+                break;
+            case FLOAT:
+                prep.setDouble(index, (Float) value);
+                break;
+            case MONEY:
+                prep.setString(index, value.toString());
+                break;
+            case BOOLEAN:
+                prep.setInt(index, ((Boolean) value) ? 1 : 0);
+                break;
+            default:
+                prep.setObject(index, value);
+                break;
+        }
+    }
+
+    @Test
+    public void testColumnarExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        final Connection expected = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(0.25);
+            generator.createDatabase(mdbFile, 1, ALL_TYPES, ALL_TYPES.length + 1, 100);
+
+            final Database db = Database.open(mdbFile, true);
+            new AccessExporter(db).export(expected);
+
+            /* A batch size that leaves a partial batch at the end */
+            final AccessExporter exporter = new AccessExporter(db);
+            exporter.setColumnarBatches(true);
+            exporter.setBatchSize(7);
+            exporter.export(sqlite);
+            db.close();
+
+            /* Columnar storage must not change any value */
+            final String query = "SELECT * FROM table0 ORDER BY id";
+            final Statement expectedStmt = expected.createStatement();
+            final Statement stmt = sqlite.createStatement();
+            final ResultSet expectedRs = expectedStmt.executeQuery(query);
+            final ResultSet rs = stmt.executeQuery(query);
+            final int columnCount = rs.getMetaData().getColumnCount();
+            int rows = 0;
+            while (expectedRs.next()) {
+                Assert.assertTrue(rs.next());
+                for (int i = 1; i <= columnCount; i++)
+                    Assert.assertEquals(expectedRs.getString(i), rs.getString(i));
+                rows++;
+            }
+            Assert.assertFalse(rs.next());
+            Assert.assertEquals(100, rows);
+
+            rs.close();
+            expectedRs.close();
+            stmt.close();
+            expectedStmt.close();
+        } finally {
+            expected.close();
+            mdbFile.delete();
+        }
+    }
+
+    @Test
+    public void testPrimaryKeyOrderExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setPrimaryKeyOrder(true);
+        exporter.export(sqlite);
+
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(db.getTable(tableName).getRowCount(), countRows(tableName));
+
+        /* The autonumber key must be the rowid */
+        final Statement stmt = sqlite.createStatement();
+        final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM economics WHERE rowid = ID");
+        try {
+            rs.next();
+            Assert.assertEquals(5, rs.getInt(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testPrimaryKeyExport () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        exporter.setDeclarePrimaryKeys(true);
+        exporter.export(sqlite);
+
+        /* The key is the rowid, and has no separate index */
+        final Statement stmt = sqlite.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM economics WHERE rowid = ID");
+        try {
+            rs.next();
+            Assert.assertEquals(5, rs.getInt(1));
+        } finally {
+            rs.close();
+        }
+
+        rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND tbl_name = 'economics'");
+        try {
+            rs.next();
+            Assert.assertEquals(0, rs.getInt(1));
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testUnkeyedKeyOrderExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        try {
+            /* Jackcess can't create indexes, so the table has no primary key index. Store its ids out of order. */
+            final List<Integer> ids = new ArrayList<Integer>();
+            for (int i = 0; i < 100; i++)
+                ids.add(i);
+            Collections.shuffle(ids, new Random(0));
+
+            final Database db = Database.create(mdbFile);
+            final List<Column> columns = new ArrayList<Column>();
+            columns.add(new ColumnBuilder("name", DataType.TEXT).toColumn());
+            columns.add(new ColumnBuilder("id", DataType.LONG).toColumn());
+            db.createTable("names", columns);
+            for (Integer id : ids)
+                db.getTable("names").addRow("name" + id, id);
+
+            final AccessExporter exporter = new AccessExporter(db);
+            exporter.setPrimaryKeyOrder(true);
+            exporter.export(sqlite);
+            db.close();
+
+            /* Without a key index nothing is declared as the rowid, and the rows are copied in storage order */
+            final Statement stmt = sqlite.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE name = 'names'");
+            try {
+                Assert.assertTrue(rs.next());
+                Assert.assertFalse(rs.getString(1).toUpperCase().contains("PRIMARY KEY"));
+            } finally {
+                rs.close();
+            }
+
+            rs = stmt.executeQuery("SELECT id FROM names ORDER BY rowid");
+            try {
+                for (Integer id : ids) {
+                    Assert.assertTrue(rs.next());
+                    Assert.assertEquals(id.intValue(), rs.getInt(1));
+                }
+                Assert.assertFalse(rs.next());
+            } finally {
+                rs.close();
+                stmt.close();
+            }
+        } finally {
+            mdbFile.delete();
+        }
+    }
+
+    @Test
+    public void testBlobDeduplicationExport () throws IOException, SQLException {
+        final File mdbFile = File.createTempFile("mdb-sqlite-test", ".mdb");
+        try {
+            final byte[][] blobs = { { 1, 2, 3 }, { 4, 5 } };
+            final Database db = Database.create(mdbFile);
+            final List<Column> columns = new ArrayList<Column>();
+            columns.add(new ColumnBuilder("id", DataType.LONG).toColumn());
+            columns.add(new ColumnBuilder("logo", DataType.OLE).toColumn());
+            db.createTable("images", columns);
+            for (int i = 0; i < 10; i++)
+                db.getTable("images").addRow(i, i == 9 ? null : blobs[i % 2]);
+
+            final AccessExporter exporter = new AccessExporter(db);
+            exporter.setRawBinary(true);
+            exporter.setDeduplicateBlobs(true);
+            exporter.export(sqlite);
+            db.close();
+
+            Assert.assertEquals(10, countRows("images"));
+            Assert.assertEquals(2, countRows(BlobStore.TABLE_NAME));
+
+            /* The view must restore the original values */
+            final Statement stmt = sqlite.createStatement();
+            final ResultSet rs = stmt.executeQuery("SELECT id, logo FROM images_view ORDER BY id");
+            try {
+                for (int i = 0; i < 10; i++) {
+                    Assert.assertTrue(rs.next());
+                    Assert.assertEquals(i, rs.getInt(1));
+                    if (i == 9)
+                        Assert.assertNull(rs.getBytes(2));
+                    else
+                        Assert.assertArrayEquals(blobs[i % 2], rs.getBytes(2));
+                }
+            } finally {
+                rs.close();
+                stmt.close();
+            }
+        } finally {
+            mdbFile.delete();
+        }
+    }
+
+    @Test
+    public void testExportListener () throws IOException, SQLException {
+        final Database db = Database.open(ACCESS_DB, true);
+        final AccessExporter exporter = new AccessExporter(db);
+        final Map<String, Long> finished = new HashMap<String, Long>();
+
+        exporter.setListener(new ExportListener() {
+            public void tableStarted (String tableName, int rowCount) {}
+            public void tableProgress (String tableName, long rowsWritten, long bytesWritten, double rowsPerSecond, long etaMillis) {}
+            public void tableFinished (String tableName, long rowsWritten, long bytesWritten, long elapsedMillis) {
+                finished.put(tableName, rowsWritten);
+            }
+        });
+        exporter.export(sqlite);
+
+        Assert.assertEquals(db.getTableNames().size(), finished.size());
+        for (String tableName : db.getTableNames())
+            Assert.assertEquals(Long.valueOf(db.getTable(tableName).getRowCount()), finished.get(tableName));
+    }
+
+    @Test
+    public void testExportReport () throws IOException, SQLException {
+        final AccessExporter exporter = new AccessExporter(Database.open(ACCESS_DB, true));
+        exporter.export(sqlite);
+
+        final StringWriter json = new StringWriter();
+        exporter.getReport().writeJson(json);
+        Assert.assertTrue(json.toString().contains("\"name\": \"economics\", \"rows\": 5"));
+        Assert.assertTrue(json.toString().contains("\"table\": \"economics\", \"name\": \"ID\""));
+    }
+
+    /**
+     * Assert that the given SQLite table holds the same values, with the
+     * same storage classes and in the same rowid order, in both databases.
+     * 
+     * @param expected Database holding the expected values
+     * @param tableName Table to compare with the test database
+     * @param rowCount Expected number of rows
+     */
+    private void assertSameRows (final Connection expected, final String tableName, final int rowCount) throws SQLException {
+        final Statement expectedStmt = expected.createStatement();
+        final Statement stmt = sqlite.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT * FROM \"" + tableName + "\" LIMIT 0");
+        final int columnCount = rs.getMetaData().getColumnCount();
+        final StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 1; i <= columnCount; i++) {
+            final String name = "\"" + rs.getMetaData().getColumnName(i) + "\"";
+            query.append(i > 1 ? ", " : "").append("typeof(" + name + "), " + name);
+        }
+        query.append(" FROM \"" + tableName + "\" ORDER BY rowid");
+        rs.close();
+
+        final ResultSet expectedRs = expectedStmt.executeQuery(query.toString());
+        rs = stmt.executeQuery(query.toString());
+        try {
+            int rows = 0;
+            while (expectedRs.next()) {
+                Assert.assertTrue(rs.next());
+                for (int i = 1; i <= 2 * columnCount; i++) {
+                    final String label = "row " + rows + ", result column " + i;
+                    Assert.assertEquals(label, expectedRs.getString(i), rs.getString(i));
+                    Assert.assertTrue(label, Arrays.equals(expectedRs.getBytes(i), rs.getBytes(i)));
+                }
+                rows++;
+            }
+            Assert.assertFalse(rs.next());
+            Assert.assertEquals(rowCount, rows);
+        } finally {
+            rs.close();
+            expectedRs.close();
+            stmt.close();
+            expectedStmt.close();
+        }
+    }
+
+    /**
+     * Return the number of rows in the given SQLite table.
+     */
+    private int countRows (final String tableName) throws SQLException {
+        final Statement stmt = sqlite.createStatement();
+        final ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM '" + tableName.replace("'", "''") + "'");
+        try {
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            rs.close();
+            stmt.close();
+        }
+    }
+
     private Connection sqlite;
+
+    /** Every MS Access data type supported by the exporter */
+    private static final DataType[] ALL_TYPES = new DataType[] {
+        DataType.BOOLEAN, DataType.BYTE, DataType.INT, DataType.LONG, DataType.MONEY, DataType.FLOAT,
+        DataType.DOUBLE, DataType.SHORT_DATE_TIME, DataType.BINARY, DataType.TEXT, DataType.OLE,
+        DataType.MEMO, DataType.GUID, DataType.NUMERIC
+    };
     
     /** An example Access database. Path is relative to the checkout -- hopefully this continues to work. */
     private static final File ACCESS_DB = new File("example/test-database.mdb");
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores each distinct BINARY and OLE value once, keyed by its SHA-1 digest,
+ * in the {@link #TABLE_NAME} side table. Exported tables hold the blob's id
+ * in place of the value.
+ *
+ * The digest to id map is shared by all connections of an export, so that
+ * blobs written to separate shards keep unique ids once merged.
+ */
+final class BlobStore {
+    /** Name of the SQLite side table holding the unique blobs */
+    public static final String TABLE_NAME = "mdb_blobs";
+
+    /**
+     * Create the blob side table.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     * @throws SQLException
+     */
+    public static void createTable (final Connection jdbc) throws SQLException {
+        final Statement stmt = jdbc.createStatement();
+        try {
+            stmt.execute("CREATE TABLE '" + TABLE_NAME + "' ('id' INTEGER PRIMARY KEY, 'sha1' TEXT, 'data' BLOB)");
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Open a writer that inserts new blobs through the given connection.
+     * Writers are not thread-safe; open one per thread.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     * @throws SQLException
+     */
+    public Writer open (final Connection jdbc) throws SQLException {
+        return new Writer(jdbc);
+    }
+
+    /**
+     * Return the number of blob references handed out.
+     */
+    public synchronized long getReferenceCount () {
+        return referenceCount;
+    }
+
+    /**
+     * Return the number of distinct blobs stored.
+     */
+    public synchronized long getBlobCount () {
+        return ids.size();
+    }
+
+    /**
+     * Return the number of bytes not written because the blob was already stored.
+     */
+    public synchronized long getDuplicateBytes () {
+        return duplicateBytes;
+    }
+
+    /**
+     * Look up the id of a digest, assigning a new one if it hasn't been seen.
+     * 
+     * @param digest The blob's digest
+     * @param length The blob's length
+     * @return The id, negated if newly assigned.
+     */
+    private synchronized long reference (final String digest, final int length) {
+        referenceCount++;
+
+        final Long id = ids.get(digest);
+        if (id != null) {
+            duplicateBytes += length;
+            return id;
+        }
+
+        final long newId = ids.size() + 1;
+        ids.put(digest, newId);
+        return -newId;
+    }
+
+    /**
+     * Inserts new blobs through a single connection.
+     */
+    public class Writer {
+        private Writer (final Connection jdbc) throws SQLException {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 is not available", e);
+            }
+            this.prep = jdbc.prepareStatement("INSERT INTO '" + TABLE_NAME + "' VALUES (?, ?, ?)");
+        }
+
+        /**
+         * Return the id of the given blob, storing it first if it has not been seen before.
+         * 
+         * @param bytes The blob
+         * @throws SQLException
+         */
+        public long store (final byte[] bytes) throws SQLException {
+            final String hex = toHex(digest.digest(bytes));
+            final long id = reference(hex, bytes.length);
+            if (id > 0)
+                return id;
+
+            prep.setLong(1, -id);
+            prep.setString(2, hex);
+            prep.setBytes(3, bytes);
+            prep.executeUpdate();
+            return -id;
+        }
+
+        /**
+         * Close the insert statement.
+         * 
+         * @throws SQLException
+         */
+        public void close () throws SQLException {
+            prep.close();
+        }
+
+        /** Blob digest */
+        private final MessageDigest digest;
+
+        /** Blob INSERT statement */
+        private final PreparedStatement prep;
+    }
+
+    /**
+     * Return the lower case hexadecimal representation of the bytes.
+     */
+    private static String toHex (final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    /** Blob ids, by digest */
+    private final Map<String, Long> ids = new HashMap<String, Long>();
+
+    /** Number of references handed out */
+    private long referenceCount;
+
+    /** Bytes of duplicate blobs not written */
+    private long duplicateBytes;
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Date;
+import java.util.List;
+
+import com.healthmarketscience.jackcess.Column;
+
+/**
+ * Binds a single MS Access column value to an INSERT statement parameter.
+ *
+ * Binders are selected once per table from the column's data type, so
+ * that the per-row work is a single array read and a typed setter call.
+ */
+abstract class ColumnBinder {
+    /**
+     * Create a binder for the given column.
+     * 
+     * @param column MS Access column
+     * @param parameterIndex The 1-based statement parameter index
+     * @param storage The {@link RowBatch} storage type of the column's values
+     */
+    protected ColumnBinder (final Column column, final int parameterIndex, final int storage) {
+        this.columnIndex = parameterIndex - 1;
+        this.parameterIndex = parameterIndex;
+        this.storage = storage;
+    }
+
+    /**
+     * Create binders for all of the given columns, in statement parameter order.
+     * 
+     * @param columns MS Access table columns
+     * @param rawBinary If true, BINARY and OLE values are stored as-is rather than Java-serialized.
+     * @param blobs If not null, BINARY and OLE values are stored once each in the blob side table,
+     * and replaced with their id.
+     * @throws SQLException If a column's data type is not supported.
+     */
+    public static ColumnBinder[] forColumns (final List<Column> columns, final boolean rawBinary, final BlobStore.Writer blobs) throws SQLException {
+        final ColumnBinder[] binders = new ColumnBinder[columns.size()];
+
+        for (int i = 0; i < binders.length; i++)
+            binders[i] = forColumn(columns.get(i), i + 1, rawBinary, blobs);
+
+        return binders;
+    }
+
+    /**
+     * Create the binder for a single column.
+     * 
+     * @param column MS Access column
+     * @param parameterIndex The 1-based statement parameter index
+     * @param rawBinary If true, BINARY and OLE values are stored as-is rather than Java-serialized.
+     * @param blobs If not null, BINARY and OLE values are stored once each in the blob side table,
+     * and replaced with their id.
+     * @throws SQLException If the column's data type is not supported.
+     */
+    public static ColumnBinder forColumn (final Column column, final int parameterIndex, final boolean rawBinary,
+            final BlobStore.Writer blobs) throws SQLException
+    {
+        switch (column.getType()) {
+            case BINARY:
+            case OLE:
+                if (blobs != null)
+                    return new BlobReferenceBinder(column, parameterIndex, rawBinary, blobs);
+                if (rawBinary)
+                    return new BytesBinder(column, parameterIndex);
+                return new SerializedBinder(column, parameterIndex);
+
+            case BOOLEAN:
+                return new BooleanBinder(column, parameterIndex);
+
+            case BYTE:
+            case INT:
+            case LONG:
+                return new IntegerBinder(column, parameterIndex);
+
+            case FLOAT:
+            case DOUBLE:
+                return new DoubleBinder(column, parameterIndex);
+
+            case SHORT_DATE_TIME:
+                return new DateBinder(column, parameterIndex);
+
+            /* Money is stored as a string. Is there any other valid representation in SQLite? */
+            case MONEY:
+            case NUMERIC:
+            case TEXT:
+            case GUID:
+            case MEMO:
+                return new StringBinder(column, parameterIndex);
+
+            default:
+                throw new SQLException("Unhandled MS Acess datatype: " + column.getType());
+        }
+    }
+
+    /**
+     * Fetch this binder's column from the row and bind it.
+     * 
+     * @param prep The INSERT statement
+     * @param parameterOffset Added to the parameter index; non-zero when binding
+     * a row other than the first of a multi-row statement
+     * @param row MS Access row values, in column order
+     * @return The approximate size of the bound value, in bytes.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public int bind (final PreparedStatement prep, final int parameterOffset, final Object[] row) throws SQLException, IOException {
+        final Object value = row[columnIndex];
+
+        /* If null, just bail out early and avoid a lot of NULL checking */
+        if (value == null) {
+            prep.setNull(parameterIndex + parameterOffset, Types.NULL);
+            return 0;
+        }
+
+        return bindValue(prep, parameterIndex + parameterOffset, value);
+    }
+
+    /**
+     * Copy this binder's column of a row that has just been bound, for binding
+     * again later. Binding the copy must repeat none of the first binding's side
+     * effects; by default, the value is copied as-is.
+     * 
+     * @param row MS Access row values, in column order, as last bound
+     * @param copy Destination row
+     */
+    public void retain (final Object[] row, final Object[] copy) {
+        copy[columnIndex] = row[columnIndex];
+    }
+
+    /**
+     * Fetch this binder's column from the row and store it in the row being added to the batch.
+     * 
+     * @param batch Columnar row batch
+     * @param row MS Access row values, in column order
+     * @return The approximate size of the stored value, in bytes.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public int store (final RowBatch batch, final Object[] row) throws SQLException, IOException {
+        final Object value = row[columnIndex];
+
+        if (value == null) {
+            batch.putNull(columnIndex);
+            return 0;
+        }
+
+        return storeValue(batch, columnIndex, value);
+    }
+
+    /**
+     * Bind this binder's column of a batched row.
+     * 
+     * @param prep The INSERT statement
+     * @param parameterOffset Added to the parameter index
+     * @param batch Columnar row batch
+     * @param row Row position within the batch
+     * @throws SQLException
+     */
+    public void bind (final PreparedStatement prep, final int parameterOffset, final RowBatch batch, final int row) throws SQLException {
+        batch.bind(prep, parameterIndex + parameterOffset, columnIndex, row);
+    }
+
+    /**
+     * Return the {@link RowBatch} storage type of the column's values.
+     */
+    public int getStorage () {
+        return storage;
+    }
+
+    /**
+     * Bind a non-null column value.
+     * 
+     * @param prep The INSERT statement
+     * @param index The 1-based statement parameter index
+     * @param value The column value
+     * @return The approximate size of the bound value, in bytes.
+     * @throws SQLException
+     * @throws IOException
+     */
+    protected abstract int bindValue (PreparedStatement prep, int index, Object value) throws SQLException, IOException;
+
+    /**
+     * Store a non-null column value in the row being added to a batch.
+     * 
+     * @param batch Columnar row batch
+     * @param column Column position
+     * @param value The column value
+     * @return The approximate size of the stored value, in bytes.
+     * @throws SQLException
+     * @throws IOException
+     */
+    protected abstract int storeValue (RowBatch batch, int column, Object value) throws SQLException, IOException;
+
+    /**
+     * Stores the Java serialization of the value.
+     */
+    private static class SerializedBinder extends ColumnBinder {
+        public SerializedBinder (Column column, int parameterIndex) {
+            super(column, parameterIndex, RowBatch.BYTES);
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException, IOException {
+            final byte[] bytes = serialize(value);
+            prep.setBytes(index, bytes);
+            return bytes.length;
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) throws IOException {
+            final byte[] bytes = serialize(value);
+            batch.putBytes(column, bytes);
+            return bytes.length;
+        }
+    }
+
+    /**
+     * Stores the value once in the blob side table, and binds its id.
+     */
+    private static class BlobReferenceBinder extends ColumnBinder {
+        public BlobReferenceBinder (Column column, int parameterIndex, boolean rawBinary, BlobStore.Writer blobs) {
+            super(column, parameterIndex, RowBatch.LONG);
+            this.rawBinary = rawBinary;
+            this.blobs = blobs;
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException, IOException {
+            /* A retained value was stored when first bound */
+            lastId = value instanceof Reference ? ((Reference) value).id : reference(value);
+            prep.setLong(index, lastId);
+            return 8;
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) throws SQLException, IOException {
+            batch.putLong(column, reference(value));
+            return 8;
+        }
+
+        public void retain (Object[] row, Object[] copy) {
+            /* Retain the id, so that binding again does not count a second reference */
+            copy[columnIndex] = row[columnIndex] != null ? new Reference(lastId) : null;
+        }
+
+        private long reference (Object value) throws SQLException, IOException {
+            final byte[] bytes = rawBinary ? (byte[]) value : serialize(value);
+            return blobs.store(bytes);
+        }
+
+        /** If true, values are stored as-is rather than Java-serialized */
+        private final boolean rawBinary;
+
+        /** Blob side table writer */
+        private final BlobStore.Writer blobs;
+
+        /** Id bound by the last call to bindValue */
+        private long lastId;
+
+        /**
+         * The id of a value that has already been stored.
+         */
+        private static final class Reference {
+            public Reference (long id) {
+                this.id = id;
+            }
+
+            /** Blob id */
+            public final long id;
+        }
+    }
+
+    /**
+     * Stores byte[] values directly.
+     */
+    private static class BytesBinder extends ColumnBinder {
+        public BytesBinder (Column column, int parameterIndex) {
+            super(column, parameterIndex, RowBatch.BYTES);
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException {
+            final byte[] bytes = (byte[]) value;
+            prep.setBytes(index, bytes);
+            return bytes.length;
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) {
+            final byte[] bytes = (byte[]) value;
+            batch.putBytes(column, bytes);
+            return bytes.length;
+        }
+    }
+
+    /**
+     * The SQLite JDBC driver does not handle boolean values; store 1/0.
+     */
+    private static class BooleanBinder extends ColumnBinder {
+        public BooleanBinder (Column column, int parameterIndex) {
+            super(column, parameterIndex, RowBatch.LONG);
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException {
+            prep.setInt(index, ((Boolean) value) ? 1 : 0);
+            return 1;
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) {
+            batch.putLong(column, ((Boolean) value) ? 1 : 0);
+            return 1;
+        }
+    }
+
+    /**
+     * Byte, Short and Integer values.
+     */
+    private static class IntegerBinder extends ColumnBinder {
+        public IntegerBinder (Column column, int parameterIndex) {
+            super(column, parameterIndex, RowBatch.LONG);
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException {
+            prep.setInt(index, ((Number) value).intValue());
+            return 4;
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) {
+            batch.putLong(column, ((Number) value).intValue());
+            return 4;
+        }
+    }
+
+    /**
+     * Float and Double values.
+     */
+    private static class DoubleBinder extends ColumnBinder {
+        public DoubleBinder (Column column, int parameterIndex) {
+            super(column, parameterIndex, RowBatch.DOUBLE);
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException {
+            prep.setDouble(index, ((Number) value).doubleValue());
+            return 8;
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) {
+            batch.putDouble(column, ((Number) value).doubleValue());
+            return 8;
+        }
+    }
+
+    /**
+     * Dates, stored as milliseconds since the epoch (as the SQLite JDBC driver does).
+     */
+    private static class DateBinder extends ColumnBinder {
+        public DateBinder (Column column, int parameterIndex) {
+            super(column, parameterIndex, RowBatch.LONG);
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException {
+            prep.setLong(index, ((Date) value).getTime());
+            return 8;
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) {
+            batch.putLong(column, ((Date) value).getTime());
+            return 8;
+        }
+    }
+
+    /**
+     * Strings, and any value stored by its string representation.
+     */
+    private static class StringBinder extends ColumnBinder {
+        public StringBinder (Column column, int parameterIndex) {
+            super(column, parameterIndex, RowBatch.CHARS);
+        }
+
+        protected int bindValue (PreparedStatement prep, int index, Object value) throws SQLException {
+            final String string = value.toString();
+            prep.setString(index, string);
+            return string.length();
+        }
+
+        protected int storeValue (RowBatch batch, int column, Object value) {
+            final String string = value.toString();
+            batch.putString(column, string);
+            return string.length();
+        }
+    }
+
+    /**
+     * Return the Java serialization of the value.
+     */
+    private static byte[] serialize (final Object value) throws IOException {
+        final ByteArrayOutputStream bStream = new ByteArrayOutputStream();
+        final ObjectOutputStream oStream = new ObjectOutputStream(bStream);
+        oStream.writeObject(value);
+        oStream.close();
+        return bStream.toByteArray();
+    }
+
+    /** Position of the column's value in a row */
+    protected final int columnIndex;
+
+    /** The 1-based statement parameter index */
+    protected final int parameterIndex;
+
+    /** The {@link RowBatch} storage type of the column's values */
+    protected final int storage;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+/**
+ * Determines how often the {@link AccessExporter} commits while
+ * populating a table. A commit is issued once either the row or the
+ * byte threshold has been reached since the previous commit.
+ */
+public class CommitPolicy {
+    /** Never commit while populating; the export runs as a single transaction. */
+    public static final CommitPolicy NEVER = new CommitPolicy(0, 0);
+
+    /**
+     * Create a new commit policy.
+     * 
+     * @param maxRows Commit after this many rows, or 0 for no row limit.
+     * @param maxBytes Commit after approximately this many bytes of row data, or 0 for no byte limit.
+     */
+    public CommitPolicy (long maxRows, long maxBytes) {
+        if (maxRows < 0 || maxBytes < 0)
+            throw new IllegalArgumentException("Commit thresholds must not be negative");
+
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Return true if a commit is due.
+     * 
+     * @param rows Rows written since the previous commit
+     * @param bytes Approximate bytes written since the previous commit
+     */
+    public boolean shouldCommit (long rows, long bytes) {
+        return (maxRows > 0 && rows >= maxRows) || (maxBytes > 0 && bytes >= maxBytes);
+    }
+
+    /**
+     * Return the row threshold, or 0 if there is none.
+     */
+    public long getMaxRows () {
+        return maxRows;
+    }
+
+    /**
+     * Return the byte threshold, or 0 if there is none.
+     */
+    public long getMaxBytes () {
+        return maxBytes;
+    }
+
+    public String toString () {
+        return String.format("rows=%d, bytes=%d", maxRows, maxBytes);
+    }
+
+    /** Row threshold */
+    private final long maxRows;
+
+    /** Byte threshold */
+    private final long maxBytes;
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.PrintStream;
+
+/**
+ * Prints export progress to a console stream.
+ */
+public class ConsoleExportListener implements ExportListener {
+    /**
+     * Create a new listener.
+     * 
+     * @param out The stream to print to
+     */
+    public ConsoleExportListener (PrintStream out) {
+        this.out = out;
+    }
+
+    public synchronized void tableStarted (String tableName, int rowCount) {
+        out.println(String.format("%s: started, %d rows", tableName, rowCount));
+    }
+
+    public synchronized void tableProgress (String tableName, long rowsWritten, long bytesWritten, double rowsPerSecond, long etaMillis) {
+        out.println(String.format("%s: %d rows, %s, %.0f rows/sec, ETA %s",
+                tableName, rowsWritten, formatBytes(bytesWritten), rowsPerSecond, formatDuration(etaMillis)));
+    }
+
+    public synchronized void tableFinished (String tableName, long rowsWritten, long bytesWritten, long elapsedMillis) {
+        out.println(String.format("%s: finished, %d rows, %s in %s",
+                tableName, rowsWritten, formatBytes(bytesWritten), formatDuration(elapsedMillis)));
+    }
+
+    /**
+     * Format a byte count in binary units.
+     */
+    private static String formatBytes (final long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        if (bytes < 1024 * 1024)
+            return String.format("%.1f KiB", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024)
+            return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+        return String.format("%.1f GiB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    /**
+     * Format a duration as H:MM:SS.
+     */
+    private static String formatDuration (final long millis) {
+        if (millis < 0)
+            return "unknown";
+
+        final long seconds = millis / 1000;
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+
+    /** Output stream */
+    private final PrintStream out;
+}
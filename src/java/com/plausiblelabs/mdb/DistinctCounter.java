@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+/**
+ * Estimates the number of distinct values in a stream from their hashes,
+ * using a HyperLogLog sketch of fixed size (1 KB, with a standard error
+ * of about 3%).
+ */
+final class DistinctCounter {
+    /**
+     * Add a value's hash. Hashes must be well mixed across all 64 bits; see {@link #mix(long)}.
+     */
+    public void add (final long hash) {
+        final int register = (int) (hash >>> (64 - PRECISION));
+        final int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1;
+        if (rank > registers[register])
+            registers[register] = (byte) rank;
+    }
+
+    /**
+     * Return the estimated number of distinct values added.
+     */
+    public long estimate () {
+        double sum = 0;
+        int zeros = 0;
+        for (byte rank : registers) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0)
+                zeros++;
+        }
+
+        final double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+
+        /* Small cardinalities are better estimated by the number of empty registers */
+        if (estimate <= 2.5 * REGISTERS && zeros > 0)
+            return Math.round(REGISTERS * Math.log((double) REGISTERS / zeros));
+        return Math.round(estimate);
+    }
+
+    /**
+     * Spread the bits of a hash code (the MurmurHash3 64-bit finalizer).
+     */
+    public static long mix (long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /** Number of hash bits selecting a register */
+    private static final int PRECISION = 10;
+
+    /** Number of registers */
+    private static final int REGISTERS = 1 << PRECISION;
+
+    /** Bias correction for the register count */
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    /** Highest rank seen by each register */
+    private final byte[] registers = new byte[REGISTERS];
+}
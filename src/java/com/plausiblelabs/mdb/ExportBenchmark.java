@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Table;
+
+/**
+ * Benchmarks the {@link AccessExporter} createTable, populateTable and
+ * createIndex paths against a synthetic MS Access table of controlled
+ * width, row count and type mix.
+ *
+ * Results are printed one line per operation, as tab-separated
+ * name/value pairs, so that they can be collected and compared
+ * across releases. ExportJmhBenchmark in src/jmh runs the same
+ * operations under JMH, when the JMH jars are available.
+ */
+public class ExportBenchmark {
+    /**
+     * Create a new benchmark.
+     * 
+     * @param table Synthetic MS Access table
+     * @param iterations Number of measured iterations
+     * @param warmupIterations Number of unmeasured iterations run first
+     */
+    public ExportBenchmark (Table table, int iterations, int warmupIterations) {
+        this.table = table;
+        this.iterations = iterations;
+        this.warmupIterations = warmupIterations;
+    }
+
+    /**
+     * Set the insert path exercised by populateTable.
+     * 
+     * @param batchSize Rows per JDBC batch
+     * @param columnar If true, collect each JDBC batch in a {@link RowBatch}
+     * @param multiRow If true, insert several rows per statement
+     */
+    public void setInserter (final int batchSize, final boolean columnar, final boolean multiRow) {
+        this.batchSize = batchSize;
+        this.columnar = columnar;
+        this.multiRow = multiRow;
+    }
+
+    /**
+     * Run all warmup and measured iterations, printing the results.
+     * 
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void run () throws IOException, SQLException {
+        for (int i = 0; i < warmupIterations; i++)
+            runIteration(false);
+
+        for (int i = 0; i < iterations; i++)
+            runIteration(true);
+    }
+
+    /**
+     * Export the synthetic table into a fresh in-memory SQLite database,
+     * timing each step.
+     */
+    private void runIteration (final boolean report) throws IOException, SQLException {
+        final AccessExporter exporter = new AccessExporter(table.getDatabase());
+        exporter.setBatchSize(batchSize);
+        exporter.setColumnarBatches(columnar);
+        exporter.setMultiRowInserts(multiRow);
+        final Connection jdbc = DriverManager.getConnection("jdbc:sqlite::memory:");
+        final String firstColumn = table.getColumns().get(0).getName();
+
+        try {
+            jdbc.setAutoCommit(false);
+
+            long start = System.nanoTime();
+            long allocated = AllocationCounter.currentThread();
+            exporter.createTable(table, jdbc);
+            report(report, "createTable", start, allocated, 1);
+
+            start = System.nanoTime();
+            allocated = AllocationCounter.currentThread();
+            exporter.populateTable(table, jdbc);
+            report(report, "populateTable", start, allocated, table.getRowCount());
+
+            start = System.nanoTime();
+            allocated = AllocationCounter.currentThread();
+            exporter.createIndex(table.getName(), "benchmark", false, Collections.singletonList(firstColumn), jdbc);
+            report(report, "createIndex", start, allocated, table.getRowCount());
+
+            jdbc.commit();
+        } finally {
+            jdbc.close();
+        }
+    }
+
+    /**
+     * Print the result of a single timed operation.
+     * 
+     * @param report If false, print nothing
+     * @param operation Operation name
+     * @param start System.nanoTime() at the start of the operation
+     * @param allocatedStart AllocationCounter.currentThread() at the start of the operation
+     * @param rows Number of rows processed by the operation
+     */
+    private void report (final boolean report, final String operation, final long start, final long allocatedStart, final long rows) {
+        final long elapsedNanos = System.nanoTime() - start;
+        final long allocated = AllocationCounter.since(allocatedStart);
+
+        if (!report)
+            return;
+
+        final double rowsPerSecond = rows * 1000000000.0 / Math.max(elapsedNanos, 1);
+        final long bytesPerRow = allocated >= 0 ? allocated / Math.max(rows, 1) : -1;
+        System.out.println(String.format("operation=%s\tcolumns=%d\trows=%d\tms=%d\trows/sec=%.0f\tbytes allocated/row=%d",
+                operation, table.getColumnCount(), rows, elapsedNanos / 1000000, rowsPerSecond, bytesPerRow));
+    }
+
+    /**
+     * Run the benchmark from the command line.
+     */
+    public static void main (String[] args) throws IOException, ClassNotFoundException, SQLException {
+        int rows = 100000;
+        int columns = 10;
+        int iterations = 5;
+        int warmupIterations = 2;
+        double nullRatio = 0;
+        int batchSize = 1;
+        boolean columnar = false;
+        boolean multiRow = false;
+        DataType[] types = MdbGenerator.DEFAULT_TYPES;
+
+        /* Parse the options */
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String option = args[i];
+                if (option.equals("-columnar")) {
+                    columnar = true;
+                    continue;
+                } else if (option.equals("-multi-row")) {
+                    multiRow = true;
+                    continue;
+                }
+
+                if (i + 1 == args.length)
+                    usage();
+
+                if (option.equals("-rows")) {
+                    rows = Integer.parseInt(args[++i]);
+                } else if (option.equals("-columns")) {
+                    columns = Integer.parseInt(args[++i]);
+                } else if (option.equals("-iterations")) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (option.equals("-warmup")) {
+                    warmupIterations = Integer.parseInt(args[++i]);
+                } else if (option.equals("-types")) {
+                    types = MdbGenerator.parseTypes(args[++i]);
+                } else if (option.equals("-null-ratio")) {
+                    nullRatio = Double.parseDouble(args[++i]);
+                } else if (option.equals("-batch-size")) {
+                    batchSize = Integer.parseInt(args[++i]);
+                } else {
+                    usage();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            usage();
+        }
+
+        /* Load the SQLite driver */
+        Class.forName("org.sqlite.JDBC");
+
+        /* Generate the fixture */
+        final File mdbFile = File.createTempFile("mdb-sqlite-bench", ".mdb");
+        mdbFile.deleteOnExit();
+        final Database db = Database.create(mdbFile);
+        final MdbGenerator generator = new MdbGenerator(0);
+        generator.setNullRatio(nullRatio);
+        final Table table = generator.createTable(db, "benchmark", types, columns, rows);
+
+        try {
+            final ExportBenchmark benchmark = new ExportBenchmark(table, iterations, warmupIterations);
+            benchmark.setInserter(batchSize, columnar, multiRow);
+            benchmark.run();
+        } finally {
+            db.close();
+            mdbFile.delete();
+        }
+    }
+
+    /**
+     * Print the usage message and exit.
+     */
+    private static void usage () {
+        System.out.println(String.format("Usage: %s [-rows <count>] [-columns <count>] [-types <type,...>] [-null-ratio <0-1>] [-batch-size <rows>] [-columnar] [-multi-row] [-iterations <count>] [-warmup <count>]",
+                ExportBenchmark.class.getName()));
+        System.exit(1);
+    }
+
+    /** Synthetic MS Access table */
+    private final Table table;
+
+    /** Number of measured iterations */
+    private final int iterations;
+
+    /** Number of unmeasured warmup iterations */
+    private final int warmupIterations;
+
+    /** Rows per JDBC batch */
+    private int batchSize = 1;
+
+    /** If true, JDBC batches are collected in a RowBatch */
+    private boolean columnar = false;
+
+    /** If true, several rows are inserted per statement */
+    private boolean multiRow = false;
+}
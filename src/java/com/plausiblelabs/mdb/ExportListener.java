@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+/**
+ * Receives progress notifications from an {@link AccessExporter}.
+ *
+ * When tables are exported in parallel, methods may be called
+ * concurrently from multiple worker threads.
+ */
+public interface ExportListener {
+    /**
+     * Called before the first row of a table is written.
+     * 
+     * @param tableName MS Access table name
+     * @param rowCount Number of rows in the MS Access table
+     */
+    public void tableStarted (String tableName, int rowCount);
+
+    /**
+     * Called periodically while a table is being populated.
+     * 
+     * @param tableName MS Access table name
+     * @param rowsWritten Rows written so far
+     * @param bytesWritten Approximate bytes of row data written so far
+     * @param rowsPerSecond Average rows per second since the table was started
+     * @param etaMillis Estimated milliseconds until the table is complete, or -1 if unknown
+     */
+    public void tableProgress (String tableName, long rowsWritten, long bytesWritten, double rowsPerSecond, long etaMillis);
+
+    /**
+     * Called once all rows of a table have been written.
+     * 
+     * @param tableName MS Access table name
+     * @param rowsWritten Total rows written
+     * @param bytesWritten Approximate total bytes of row data written
+     * @param elapsedMillis Time spent populating the table
+     */
+    public void tableFinished (String tableName, long rowsWritten, long bytesWritten, long elapsedMillis);
+}
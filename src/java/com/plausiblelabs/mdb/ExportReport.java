@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timings and allocation statistics collected during a single
+ * {@link AccessExporter} export, written as JSON.
+ *
+ * All methods are thread-safe; tables may be reported concurrently
+ * by parallel export workers.
+ */
+public class ExportReport {
+    /**
+     * Record the duration of an export phase.
+     * 
+     * @param name Phase name
+     * @param millis Duration in milliseconds
+     */
+    public synchronized void addPhase (String name, long millis) {
+        phases.add(new Phase(name, millis));
+        totalMillis += millis;
+    }
+
+    /**
+     * Record the population of a table.
+     * 
+     * @param name MS Access table name
+     * @param rows Rows written
+     * @param bytes Approximate bytes of row data written
+     * @param millis Time spent populating the table, including commits
+     * @param commitMillis Time spent in intermediate commits
+     * @param allocatedBytes Bytes allocated while populating the table, or -1 if unknown
+     */
+    public synchronized void addTable (String name, long rows, long bytes, long millis, long commitMillis, long allocatedBytes) {
+        tables.add(new TableStats(name, rows, bytes, millis, commitMillis, allocatedBytes));
+    }
+
+    /**
+     * Record the creation of an index.
+     * 
+     * @param tableName MS Access table name
+     * @param indexName MS Access index name
+     * @param millis Time spent in CREATE INDEX
+     */
+    public synchronized void addIndex (String tableName, String indexName, long millis) {
+        indexes.add(new IndexStats(tableName, indexName, millis));
+    }
+
+    /**
+     * Record a post-export maintenance step.
+     * 
+     * @param name Step name
+     * @param millis Time spent in the step
+     * @param budgetMillis The step's time budget
+     * @param status Outcome of the step, such as "completed" or "skipped"
+     */
+    public synchronized void addMaintenanceStep (String name, long millis, long budgetMillis, String status) {
+        maintenanceSteps.add(new MaintenanceStep(name, millis, budgetMillis, status));
+    }
+
+    /**
+     * Return the sum of all recorded phase durations, in milliseconds.
+     */
+    public synchronized long getTotalMillis () {
+        return totalMillis;
+    }
+
+    /**
+     * Write the report as a JSON object.
+     * 
+     * @param out Destination writer
+     * @throws IOException
+     */
+    public synchronized void writeJson (Writer out) throws IOException {
+        out.write("{\n  \"totalMillis\": " + totalMillis + ",\n");
+
+        out.write("  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            final Phase phase = phases.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("    {\"name\": " + quote(phase.name) + ", \"millis\": " + phase.millis + "}");
+        }
+        out.write("\n  ],\n");
+
+        out.write("  \"tables\": [");
+        for (int i = 0; i < tables.size(); i++) {
+            final TableStats table = tables.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("    {\"name\": " + quote(table.name) +
+                    ", \"rows\": " + table.rows +
+                    ", \"bytes\": " + table.bytes +
+                    ", \"millis\": " + table.millis +
+                    ", \"commitMillis\": " + table.commitMillis +
+                    ", \"allocatedBytes\": " + table.allocatedBytes + "}");
+        }
+        out.write("\n  ],\n");
+
+        out.write("  \"indexes\": [");
+        for (int i = 0; i < indexes.size(); i++) {
+            final IndexStats index = indexes.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("    {\"table\": " + quote(index.tableName) +
+                    ", \"name\": " + quote(index.indexName) +
+                    ", \"millis\": " + index.millis + "}");
+        }
+        out.write("\n  ],\n");
+
+        out.write("  \"maintenance\": [");
+        for (int i = 0; i < maintenanceSteps.size(); i++) {
+            final MaintenanceStep step = maintenanceSteps.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("    {\"name\": " + quote(step.name) +
+                    ", \"millis\": " + step.millis +
+                    ", \"budgetMillis\": " + step.budgetMillis +
+                    ", \"status\": " + quote(step.status) + "}");
+        }
+        out.write("\n  ]\n}\n");
+        out.flush();
+    }
+
+    /**
+     * Quote a string as a JSON string literal.
+     */
+    private static String quote (final String value) {
+        final StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        builder.append(String.format("\\u%04x", (int) c));
+                    else
+                        builder.append(c);
+                    break;
+            }
+        }
+        builder.append('"');
+        return builder.toString();
+    }
+
+    /**
+     * A timed export phase.
+     */
+    private static class Phase {
+        public Phase (String name, long millis) {
+            this.name = name;
+            this.millis = millis;
+        }
+
+        public final String name;
+        public final long millis;
+    }
+
+    /**
+     * Statistics for a single populated table.
+     */
+    private static class TableStats {
+        public TableStats (String name, long rows, long bytes, long millis, long commitMillis, long allocatedBytes) {
+            this.name = name;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.millis = millis;
+            this.commitMillis = commitMillis;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public final String name;
+        public final long rows;
+        public final long bytes;
+        public final long millis;
+        public final long commitMillis;
+        public final long allocatedBytes;
+    }
+
+    /**
+     * Statistics for a single created index.
+     */
+    private static class IndexStats {
+        public IndexStats (String tableName, String indexName, long millis) {
+            this.tableName = tableName;
+            this.indexName = indexName;
+            this.millis = millis;
+        }
+
+        public final String tableName;
+        public final String indexName;
+        public final long millis;
+    }
+
+    /**
+     * A post-export maintenance step.
+     */
+    private static class MaintenanceStep {
+        public MaintenanceStep (String name, long millis, long budgetMillis, String status) {
+            this.name = name;
+            this.millis = millis;
+            this.budgetMillis = budgetMillis;
+            this.status = status;
+        }
+
+        public final String name;
+        public final long millis;
+        public final long budgetMillis;
+        public final String status;
+    }
+
+    /** Timed phases, in order */
+    private final List<Phase> phases = new ArrayList<Phase>();
+
+    /** Populated tables, in order of completion */
+    private final List<TableStats> tables = new ArrayList<TableStats>();
+
+    /** Created indexes, in order of creation */
+    private final List<IndexStats> indexes = new ArrayList<IndexStats>();
+
+    /** Maintenance steps, in order */
+    private final List<MaintenanceStep> maintenanceSteps = new ArrayList<MaintenanceStep>();
+
+    /** Sum of all phase durations */
+    private long totalMillis;
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+/**
+ * Receives timed spans for the phases of an {@link AccessExporter} export,
+ * for use by profilers and event recorders.
+ *
+ * Each begin method is called immediately before the traced work starts, and
+ * the returned span is ended immediately after it completes. When tables are
+ * exported in parallel, methods may be called concurrently from multiple
+ * worker threads.
+ */
+public interface ExportTracer {
+    /**
+     * A traced unit of work.
+     */
+    public interface Span {
+        /**
+         * Mark the work as complete.
+         * 
+         * @param rows Rows processed, or 0 if not applicable
+         * @param bytes Approximate bytes of row data processed, or 0 if not applicable
+         */
+        public void end (long rows, long bytes);
+    }
+
+    /**
+     * Begin populating a table.
+     * 
+     * @param tableName MS Access table name
+     */
+    public Span beginTable (String tableName);
+
+    /**
+     * Begin executing a batch of INSERTs.
+     * 
+     * @param tableName MS Access table name
+     */
+    public Span beginBatch (String tableName);
+
+    /**
+     * Begin building an index.
+     * 
+     * @param tableName MS Access table name
+     * @param indexName MS Access index name
+     */
+    public Span beginIndex (String tableName, String indexName);
+
+    /**
+     * Begin a commit.
+     * 
+     * @param tableName MS Access table being populated, or null for the final commit of the export
+     */
+    public Span beginCommit (String tableName);
+}
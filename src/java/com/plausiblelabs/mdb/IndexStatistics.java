@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the statistics SQLite's ANALYZE would store in sqlite_stat1 for a
+ * single index, from the rows as they are exported: the row count, and an
+ * estimate of the number of distinct values of each leading subset of the
+ * index columns.
+ */
+final class IndexStatistics {
+    /**
+     * Create an empty collector.
+     * 
+     * @param tableName SQLite table name
+     * @param columnNames Names of the indexed columns, in index order
+     * @param columnPositions Row positions of the indexed columns, in index order
+     * @param unique If true, the index is unique
+     */
+    public IndexStatistics (final String tableName, final List<String> columnNames, final int[] columnPositions, final boolean unique) {
+        this.tableName = tableName;
+        this.columnNames = columnNames;
+        this.columnPositions = columnPositions;
+        this.unique = unique;
+        this.counters = new DistinctCounter[columnPositions.length];
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = new DistinctCounter();
+    }
+
+    /**
+     * Add a row.
+     * 
+     * @param row MS Access row values, in column order
+     */
+    public void add (final Object[] row) {
+        long hash = 0;
+        for (int i = 0; i < columnPositions.length; i++) {
+            final Object value = row[columnPositions[i]];
+            final int valueHash;
+            if (value == null)
+                valueHash = 0;
+            else if (value instanceof byte[])
+                valueHash = Arrays.hashCode((byte[]) value);
+            else
+                valueHash = value.hashCode();
+
+            /* Hash the leading i + 1 columns together */
+            hash = hash * 0x9e3779b97f4a7c15L + valueHash;
+            counters[i].add(DistinctCounter.mix(hash));
+        }
+        rowCount++;
+    }
+
+    /**
+     * Return the SQLite table name.
+     */
+    public String getTableName () {
+        return tableName;
+    }
+
+    /**
+     * Return the names of the indexed columns, in index order.
+     */
+    public List<String> getColumnNames () {
+        return columnNames;
+    }
+
+    /**
+     * Return the number of rows added.
+     */
+    public long getRowCount () {
+        return rowCount;
+    }
+
+    /**
+     * Return the sqlite_stat1 stat value: the row count, followed by the
+     * average number of rows sharing each leading subset of the index columns.
+     */
+    public String getStat () {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(rowCount);
+
+        long previous = rowCount;
+        for (int i = 0; i < counters.length; i++) {
+            long rowsPerValue;
+            if (unique && i == counters.length - 1) {
+                rowsPerValue = 1;
+            } else {
+                final long distinct = Math.max(1, Math.min(rowCount, counters[i].estimate()));
+                rowsPerValue = (rowCount + distinct - 1) / distinct;
+            }
+
+            /* Adding a column can only narrow the match */
+            rowsPerValue = Math.max(1, Math.min(previous, rowsPerValue));
+            builder.append(' ').append(rowsPerValue);
+            previous = rowsPerValue;
+        }
+        return builder.toString();
+    }
+
+    /** SQLite table name */
+    private final String tableName;
+
+    /** Names of the indexed columns */
+    private final List<String> columnNames;
+
+    /** Row positions of the indexed columns */
+    private final int[] columnPositions;
+
+    /** If true, the index is unique */
+    private final boolean unique;
+
+    /** Distinct value estimators, one per leading subset of the index columns */
+    private final DistinctCounter[] counters;
+
+    /** Rows added */
+    private long rowCount;
+}
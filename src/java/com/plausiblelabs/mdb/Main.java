@@ -29,11 +29,17 @@
 
 package com.plausiblelabs.mdb;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.healthmarketscience.jackcess.Database;
 
@@ -44,18 +50,233 @@ public class Main {
      * to standard out.
      */
     public static void main (String[] args) throws IOException, ClassNotFoundException, SQLException {
-        if (args.length != 2) {
-            System.out.println(String.format("Usage: %s <access file> <sqlite file>", Main.class.getName()));
-            System.exit(1);
+        int batchSize = 1;
+        int workerCount = 1;
+        int pipelineDepth = 0;
+        long commitRows = 0;
+        long commitBytes = 0;
+        boolean multiRow = false;
+        boolean cursorReads = false;
+        boolean columnar = false;
+        boolean primaryKeyOrder = false;
+        boolean primaryKeys = false;
+        boolean dedupBlobs = false;
+        boolean memoryMapped = false;
+        long memoryBudget = 0;
+        boolean estimateStatistics = false;
+        long analyzeBudget = 0;
+        long optimizeBudget = 0;
+        long vacuumBudget = 0;
+        boolean deferIndexes = false;
+        boolean rawBinary = false;
+        boolean quiet = false;
+        boolean sqlDump = false;
+        boolean gzip = false;
+        boolean jdbcOptions = false;
+        int rowsPerStatement = 0;
+        File reportFile = null;
+        PragmaProfile pragmaProfile = PragmaProfile.DEFAULT;
+        int argIndex = 0;
+
+        /* Parse any options preceding the file arguments */
+        try {
+            while (argIndex < args.length && args[argIndex].startsWith("-")) {
+                final String option = args[argIndex++];
+                if (JDBC_OPTIONS.contains(option))
+                    jdbcOptions = true;
+
+                if (option.equals("-batch-size") && argIndex < args.length) {
+                    batchSize = Integer.parseInt(args[argIndex++]);
+                } else if (option.equals("-workers") && argIndex < args.length) {
+                    workerCount = Integer.parseInt(args[argIndex++]);
+                } else if (option.equals("-pipeline-depth") && argIndex < args.length) {
+                    pipelineDepth = Integer.parseInt(args[argIndex++]);
+                } else if (option.equals("-commit-rows") && argIndex < args.length) {
+                    commitRows = Long.parseLong(args[argIndex++]);
+                } else if (option.equals("-commit-bytes") && argIndex < args.length) {
+                    commitBytes = Long.parseLong(args[argIndex++]);
+                } else if (option.equals("-in-memory") && argIndex < args.length) {
+                    memoryBudget = Long.parseLong(args[argIndex++]);
+                } else if (option.equals("-estimate-stats")) {
+                    estimateStatistics = true;
+                } else if (option.equals("-analyze") && argIndex < args.length) {
+                    analyzeBudget = Long.parseLong(args[argIndex++]);
+                } else if (option.equals("-optimize") && argIndex < args.length) {
+                    optimizeBudget = Long.parseLong(args[argIndex++]);
+                } else if (option.equals("-vacuum") && argIndex < args.length) {
+                    vacuumBudget = Long.parseLong(args[argIndex++]);
+                } else if (option.equals("-mmap")) {
+                    memoryMapped = true;
+                } else if (option.equals("-cursor")) {
+                    cursorReads = true;
+                } else if (option.equals("-columnar")) {
+                    columnar = true;
+                } else if (option.equals("-pk-order")) {
+                    primaryKeyOrder = true;
+                } else if (option.equals("-primary-keys")) {
+                    primaryKeys = true;
+                } else if (option.equals("-multi-row")) {
+                    multiRow = true;
+                } else if (option.equals("-defer-indexes")) {
+                    deferIndexes = true;
+                } else if (option.equals("-dedup-blobs")) {
+                    dedupBlobs = true;
+                } else if (option.equals("-raw-binary")) {
+                    rawBinary = true;
+                } else if (option.equals("-report") && argIndex < args.length) {
+                    reportFile = new File(args[argIndex++]);
+                } else if (option.equals("-sql")) {
+                    sqlDump = true;
+                } else if (option.equals("-rows-per-statement") && argIndex < args.length) {
+                    rowsPerStatement = Integer.parseInt(args[argIndex++]);
+                } else if (option.equals("-gzip")) {
+                    gzip = true;
+                } else if (option.equals("-quiet")) {
+                    quiet = true;
+                } else if (option.equals("-bulk-load")) {
+                    pragmaProfile = PragmaProfile.BULK_LOAD;
+                } else {
+                    usage();
+                }
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+
+        if (args.length - argIndex != 2)
+            usage();
+
+        /* SQL dumps are written without JDBC, and support only a subset of the options */
+        if (sqlDump && jdbcOptions)
+            usage();
+        if (!sqlDump && (gzip || rowsPerStatement != 0))
+            usage();
+        if (rowsPerStatement < 0)
+            usage();
+
+        /* Write an SQL dump, without JDBC */
+        if (sqlDump) {
+            exportSqlDump(new File(args[argIndex]), args[argIndex + 1], rowsPerStatement, commitRows, primaryKeyOrder,
+                    primaryKeys, cursorReads, rawBinary, gzip);
+            return;
         }
 
         /* Load the SQLite driver */
         Class.forName("org.sqlite.JDBC");
 
         /* Do the export */
-        final AccessExporter exporter = new AccessExporter(Database.open(new File(args[0]), true));
-        final Connection jdbc = DriverManager.getConnection("jdbc:sqlite:" + args[1]);
-        exporter.export(jdbc);
+        final AccessExporter exporter = new AccessExporter(new File(args[argIndex]), memoryMapped);
+        exporter.setBatchSize(batchSize);
+        exporter.setWorkerCount(workerCount);
+        exporter.setCursorReads(cursorReads);
+        exporter.setColumnarBatches(columnar);
+        exporter.setPrimaryKeyOrder(primaryKeyOrder);
+        exporter.setDeclarePrimaryKeys(primaryKeys);
+        exporter.setDeduplicateBlobs(dedupBlobs);
+        exporter.setMemoryBudget(memoryBudget);
+        exporter.setEstimateStatistics(estimateStatistics);
+        exporter.setAnalyzeBudget(analyzeBudget);
+        exporter.setOptimizeBudget(optimizeBudget);
+        exporter.setVacuumBudget(vacuumBudget);
+        exporter.setPipelineDepth(pipelineDepth);
+        exporter.setMultiRowInserts(multiRow);
+        exporter.setCommitPolicy(new CommitPolicy(commitRows, commitBytes));
+        exporter.setDeferIndexes(deferIndexes);
+        exporter.setRawBinary(rawBinary);
+        exporter.setPragmaProfile(pragmaProfile);
+        if (!quiet)
+            exporter.setListener(new ConsoleExportListener(System.err));
+        exporter.setTracer(loadFlightRecorderTracer());
+        exporter.export(new File(args[argIndex + 1]));
+
+        /* Write the timing report */
+        if (reportFile != null) {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+            try {
+                exporter.getReport().writeJson(out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Write an SQL dump of the Access file.
+     *
+     * @param accessFile MS Access file
+     * @param output Dump file path, or "-" for standard out
+     * @param rowsPerStatement Rows per INSERT statement, or 0 for the default
+     * @param rowsPerTransaction Rows per transaction, or 0 for the default
+     * @param primaryKeyOrder If true, write rows in primary key order
+     * @param primaryKeys If true, declare primary keys
+     * @param cursorReads If true, read rows through a Cursor
+     * @param rawBinary If true, write binary values as-is
+     * @param gzip If true, gzip the dump
+     */
+    private static void exportSqlDump (final File accessFile, final String output, final int rowsPerStatement,
+            final long rowsPerTransaction, final boolean primaryKeyOrder, final boolean primaryKeys,
+            final boolean cursorReads, final boolean rawBinary, final boolean gzip) throws IOException, SQLException
+    {
+        final Database db = Database.open(accessFile, true);
+        final SqlDumpExporter exporter = new SqlDumpExporter(db);
+        if (rowsPerStatement > 0)
+            exporter.setRowsPerStatement(rowsPerStatement);
+        if (rowsPerTransaction > 0)
+            exporter.setRowsPerTransaction(rowsPerTransaction);
+        exporter.setPrimaryKeyOrder(primaryKeyOrder);
+        exporter.setDeclarePrimaryKeys(primaryKeys);
+        exporter.setCursorReads(cursorReads);
+        exporter.setRawBinary(rawBinary);
+
+        try {
+            if (output.equals("-"))
+                exporter.export(System.out, gzip);
+            else
+                exporter.export(new File(output), gzip);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Load the Java Flight Recorder tracer, if it was built and the JVM supports it.
+     *
+     * @return The tracer, or null if unavailable.
+     */
+    private static ExportTracer loadFlightRecorderTracer () {
+        try {
+            return (ExportTracer) Class.forName(JFR_TRACER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (LinkageError e) {
+            /* Built, but jdk.jfr is missing or the class version is unsupported */
+            return null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (InstantiationException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Print the usage message and exit.
+     */
+    private static void usage () {
+        System.out.println(String.format("Usage: %s [-batch-size <rows>] [-workers <count>] [-mmap] [-cursor] [-pipeline-depth <rows>] [-commit-rows <rows>] [-commit-bytes <bytes>] [-columnar] [-pk-order] [-primary-keys] [-multi-row] [-defer-indexes] [-raw-binary] [-dedup-blobs] [-bulk-load] [-in-memory <budget bytes>] [-estimate-stats] [-analyze <ms>] [-optimize <ms>] [-vacuum <ms>] [-quiet] [-report <json file>] <access file> <sqlite file>%n" +
+                "       %s -sql [-rows-per-statement <rows>] [-commit-rows <rows>] [-cursor] [-pk-order] [-primary-keys] [-raw-binary] [-quiet] [-gzip] <access file> <sql file | ->", Main.class.getName(), Main.class.getName()));
+        System.exit(1);
     }
 
+    /** Options that only apply to exports through JDBC, and may not be combined with -sql */
+    private static final Set<String> JDBC_OPTIONS = new HashSet<String>(Arrays.asList(
+            "-batch-size", "-workers", "-pipeline-depth", "-commit-bytes", "-in-memory", "-estimate-stats",
+            "-analyze", "-optimize", "-vacuum", "-mmap", "-columnar", "-multi-row", "-defer-indexes",
+            "-dedup-blobs", "-report", "-bulk-load"));
+
+    /** Java Flight Recorder tracer, built from src/jfr when the JDK provides jdk.jfr */
+    private static final String JFR_TRACER_CLASS = "com.plausiblelabs.mdb.jfr.JfrExportTracer";
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.healthmarketscience.jackcess.Database;
+
+/**
+ * A read-only MS Access database read from a memory mapping of the whole
+ * file. Jackcess still copies each page into its own buffer, but the copy is
+ * served from the mapping without a read() system call.
+ */
+final class MappedDatabase extends Database {
+    /**
+     * Map the given MS Access file, and open it read-only.
+     * 
+     * @param accessFile Path to an Access database.
+     * @throws IOException
+     */
+    public static Database open (final File accessFile) throws IOException {
+        return new MappedDatabase(new MappedChannel(accessFile));
+    }
+
+    private MappedDatabase (final MappedChannel channel) throws IOException {
+        super(channel, false);
+    }
+
+    /**
+     * A read-only FileChannel backed by memory mappings of a file. Files larger
+     * than a single mapping are mapped in consecutive segments.
+     */
+    private static class MappedChannel extends FileChannel {
+        public MappedChannel (final File file) throws IOException {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel channel = raf.getChannel();
+                size = channel.size();
+                segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                for (int i = 0; i < segments.length; i++) {
+                    final long start = (long) i * SEGMENT_SIZE;
+                    segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+                }
+            } finally {
+                /* The mappings remain valid once the file is closed */
+                raf.close();
+            }
+        }
+
+        public int read (ByteBuffer dst, long position) throws IOException {
+            if (position >= size)
+                return -1;
+
+            final int count = (int) Math.min(dst.remaining(), size - position);
+            int remaining = count;
+            while (remaining > 0) {
+                final ByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)].duplicate();
+                final int offset = (int) (position % SEGMENT_SIZE);
+                final int length = Math.min(remaining, segment.capacity() - offset);
+
+                segment.position(offset);
+                segment.limit(offset + length);
+                dst.put(segment);
+
+                position += length;
+                remaining -= length;
+            }
+            return count;
+        }
+
+        public int read (ByteBuffer dst) throws IOException {
+            final int count = read(dst, position);
+            if (count > 0)
+                position += count;
+            return count;
+        }
+
+        public long read (ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                final int count = read(dsts[i]);
+                if (count < 0)
+                    return total > 0 ? total : -1;
+                total += count;
+            }
+            return total;
+        }
+
+        public long position () {
+            return position;
+        }
+
+        public FileChannel position (long newPosition) {
+            position = newPosition;
+            return this;
+        }
+
+        public long size () {
+            return size;
+        }
+
+        public long transferTo (long position, long count, WritableByteChannel target) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, Math.max(size - position, 0)));
+            read(buffer, position);
+            buffer.flip();
+            return target.write(buffer);
+        }
+
+        public MappedByteBuffer map (MapMode mode, long position, long size) throws IOException {
+            throw new UnsupportedOperationException("Mapped channels can not be re-mapped");
+        }
+
+        public FileChannel truncate (long size) {
+            throw new NonWritableChannelException();
+        }
+
+        public void force (boolean metaData) {
+            /* Nothing is ever written */
+        }
+
+        public int write (ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        public long write (ByteBuffer[] srcs, int offset, int length) {
+            throw new NonWritableChannelException();
+        }
+
+        public int write (ByteBuffer src, long position) {
+            throw new NonWritableChannelException();
+        }
+
+        public long transferFrom (ReadableByteChannel src, long position, long count) {
+            throw new NonWritableChannelException();
+        }
+
+        public FileLock lock (long position, long size, boolean shared) {
+            throw new UnsupportedOperationException("Mapped channels can not be locked");
+        }
+
+        public FileLock tryLock (long position, long size, boolean shared) {
+            throw new UnsupportedOperationException("Mapped channels can not be locked");
+        }
+
+        protected void implCloseChannel () {
+            /* The mappings are released once unreachable */
+            segments = null;
+        }
+
+        /** Size of each mapped segment */
+        private static final long SEGMENT_SIZE = 1L << 30;
+
+        /** File mappings, in order */
+        private MappedByteBuffer[] segments;
+
+        /** File size */
+        private final long size;
+
+        /** Channel position, for relative reads */
+        private long position;
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Table;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Writes MS Access tables filled with synthetic data, for use as
+ * benchmark and scale test fixtures.
+ *
+ * The first column of every generated table is a non-null LONG row
+ * number. Jackcess can not write index definitions, so generated tables
+ * have no indexes.
+ */
+public class MdbGenerator {
+    /**
+     * Create a new generator.
+     * 
+     * @param seed Random seed; the same seed always generates the same data.
+     */
+    public MdbGenerator (long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Set the probability that a generated value is NULL. Applies to every
+     * column but the row number. Defaults to 0.
+     * 
+     * @param nullRatio Probability between 0 and 1.
+     */
+    public void setNullRatio (final double nullRatio) {
+        if (nullRatio < 0 || nullRatio > 1)
+            throw new IllegalArgumentException("Null ratio must be between 0 and 1: " + nullRatio);
+        this.nullRatio = nullRatio;
+    }
+
+    /**
+     * Create and populate a table. The first column is the row number; column
+     * i &gt; 0 is of type columnTypes[(i - 1) % columnTypes.length].
+     * 
+     * @param db The MS Access database to write to
+     * @param tableName Name of the new table
+     * @param columnTypes Column data types, repeated to fill the table width
+     * @param columnCount Number of columns, including the row number
+     * @param rowCount Number of rows
+     * @return The new table
+     * @throws IOException
+     * @throws SQLException
+     */
+    public Table createTable (final Database db, final String tableName, final DataType[] columnTypes,
+            final int columnCount, final int rowCount) throws IOException, SQLException
+    {
+        final List<Column> columns = new ArrayList<Column>(columnCount);
+        columns.add(new ColumnBuilder("id", DataType.LONG).toColumn());
+        for (int i = 1; i < columnCount; i++)
+            columns.add(new ColumnBuilder("col" + i, columnTypes[(i - 1) % columnTypes.length]).toColumn());
+
+        db.createTable(tableName, columns);
+        final Table table = db.getTable(tableName);
+
+        /* Add the rows in chunks to bound memory use */
+        final List<Object[]> rows = new ArrayList<Object[]>(ROW_CHUNK_SIZE);
+        for (int row = 0; row < rowCount; row++) {
+            final Object[] values = new Object[columnCount];
+            values[0] = row;
+            for (int i = 1; i < columnCount; i++) {
+                if (nullRatio > 0 && random.nextDouble() < nullRatio)
+                    continue;
+                values[i] = generateValue(columns.get(i).getType(), row);
+            }
+            rows.add(values);
+
+            if (rows.size() == ROW_CHUNK_SIZE) {
+                table.addRows(rows);
+                rows.clear();
+            }
+
+            if ((row + 1) % PROGRESS_INTERVAL == 0 && log.isInfoEnabled())
+                log.info(String.format("Generated %d of %d rows of table %s", row + 1, rowCount, tableName));
+        }
+
+        if (rows.size() > 0)
+            table.addRows(rows);
+
+        return table;
+    }
+
+    /**
+     * Write a new MS Access file containing the given number of identical-shaped tables.
+     * 
+     * @param file The MS Access file to create
+     * @param tableCount Number of tables
+     * @param columnTypes Column data types, repeated to fill the table width
+     * @param columnCount Number of columns per table, including the row number
+     * @param rowCount Number of rows per table
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void createDatabase (final File file, final int tableCount, final DataType[] columnTypes,
+            final int columnCount, final int rowCount) throws IOException, SQLException
+    {
+        final Database db = Database.create(file);
+        try {
+            for (int i = 0; i < tableCount; i++)
+                createTable(db, "table" + i, columnTypes, columnCount, rowCount);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Parse a comma-separated list of MS Access data type names.
+     * 
+     * @param names Data type names, e.g. "LONG,TEXT,MEMO"
+     * @throws IllegalArgumentException If a name is not a valid data type.
+     */
+    public static DataType[] parseTypes (final String names) {
+        final String[] parts = names.split(",");
+        final DataType[] types = new DataType[parts.length];
+
+        for (int i = 0; i < parts.length; i++)
+            types[i] = DataType.valueOf(parts[i].trim().toUpperCase());
+
+        return types;
+    }
+
+    /**
+     * Generate a value for the given row of a column.
+     * 
+     * @param type Column data type
+     * @param row Row number
+     * @throws SQLException If the data type is not supported.
+     */
+    private Object generateValue (final DataType type, final int row) throws SQLException {
+        switch (type) {
+            case BOOLEAN:
+                return random.nextBoolean();
+            case BYTE:
+                return (byte) random.nextInt(128);
+            case INT:
+                return (short) random.nextInt(Short.MAX_VALUE);
+            case LONG:
+                return row;
+            case MONEY:
+                return BigDecimal.valueOf(random.nextInt(10000000), 2);
+            case FLOAT:
+                return random.nextFloat() * 1000;
+            case DOUBLE:
+                return random.nextDouble() * 1000000;
+            case NUMERIC:
+                return BigDecimal.valueOf(random.nextInt());
+            case SHORT_DATE_TIME:
+                /* Minute resolution, spread over roughly twenty years */
+                return new Date(BASE_DATE + random.nextInt(10000000) * 60000L);
+            case TEXT:
+                return generateString(1 + random.nextInt(TEXT_LENGTH));
+            case MEMO:
+                return generateString(MEMO_LENGTH / 2 + random.nextInt(MEMO_LENGTH));
+            case GUID:
+                return "{" + new UUID(random.nextLong(), random.nextLong()).toString().toUpperCase() + "}";
+            case BINARY:
+                return generateBytes(1 + random.nextInt(BINARY_LENGTH));
+            case OLE:
+                return generateBytes(OLE_LENGTH / 2 + random.nextInt(OLE_LENGTH));
+            default:
+                throw new SQLException("Unhandled MS Acess datatype: " + type);
+        }
+    }
+
+    /**
+     * Generate a random alphanumeric string.
+     */
+    private String generateString (final int length) {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        return new String(chars);
+    }
+
+    /**
+     * Generate random bytes.
+     */
+    private byte[] generateBytes (final int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Write a synthetic MS Access file from the command line.
+     */
+    public static void main (String[] args) throws IOException, SQLException {
+        int tables = 1;
+        int rows = 100000;
+        int columns = 10;
+        long seed = 0;
+        double nullRatio = 0;
+        DataType[] types = DEFAULT_TYPES;
+        int argIndex = 0;
+
+        /* Parse any options preceding the file argument */
+        try {
+            while (argIndex < args.length && args[argIndex].startsWith("-")) {
+                final String option = args[argIndex++];
+                if (argIndex == args.length)
+                    usage();
+
+                if (option.equals("-tables")) {
+                    tables = Integer.parseInt(args[argIndex++]);
+                } else if (option.equals("-rows")) {
+                    rows = Integer.parseInt(args[argIndex++]);
+                } else if (option.equals("-columns")) {
+                    columns = Integer.parseInt(args[argIndex++]);
+                } else if (option.equals("-types")) {
+                    types = parseTypes(args[argIndex++]);
+                } else if (option.equals("-null-ratio")) {
+                    nullRatio = Double.parseDouble(args[argIndex++]);
+                } else if (option.equals("-seed")) {
+                    seed = Long.parseLong(args[argIndex++]);
+                } else {
+                    usage();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            usage();
+        }
+
+        if (args.length - argIndex != 1)
+            usage();
+
+        final MdbGenerator generator = new MdbGenerator(seed);
+        generator.setNullRatio(nullRatio);
+        generator.createDatabase(new File(args[argIndex]), tables, types, columns, rows);
+    }
+
+    /**
+     * Print the usage message and exit.
+     */
+    private static void usage () {
+        System.out.println(String.format("Usage: %s [-tables <count>] [-rows <count>] [-columns <count>] [-types <type,...>] [-null-ratio <0-1>] [-seed <seed>] <access file>",
+                MdbGenerator.class.getName()));
+        System.exit(1);
+    }
+
+    /** Default column type mix */
+    public static final DataType[] DEFAULT_TYPES = new DataType[] {
+        DataType.TEXT, DataType.LONG, DataType.DOUBLE, DataType.SHORT_DATE_TIME, DataType.MONEY,
+        DataType.BOOLEAN, DataType.MEMO, DataType.OLE
+    };
+
+    /** Logger */
+    private static final Log log = LogFactory.getLog(MdbGenerator.class);
+
+    /** Number of rows between progress log messages */
+    private static final int PROGRESS_INTERVAL = 1000000;
+
+    /** Number of rows passed to each Table.addRows() call */
+    private static final int ROW_CHUNK_SIZE = 1000;
+
+    /** Characters used in generated strings */
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789 ";
+
+    /** Earliest generated date: 2000-01-01 00:00 UTC */
+    private static final long BASE_DATE = 946684800000L;
+
+    /** Maximum TEXT length; the default TEXT column size */
+    private static final int TEXT_LENGTH = 50;
+
+    /** Average MEMO length */
+    private static final int MEMO_LENGTH = 500;
+
+    /** Maximum BINARY length; the default BINARY column size */
+    private static final int BINARY_LENGTH = 255;
+
+    /** Average OLE length */
+    private static final int OLE_LENGTH = 4096;
+
+    /** Random source */
+    private final Random random;
+
+    /** Probability that a generated value is NULL */
+    private double nullRatio = 0;
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named sets of SQLite PRAGMA settings applied by the {@link AccessExporter}
+ * for the duration of an export.
+ */
+public enum PragmaProfile {
+    /** Leave the SQLite defaults untouched. */
+    DEFAULT (),
+
+    /**
+     * Trade durability for load speed. No rollback journal is kept and nothing
+     * is fsync'd, so a crash mid-export leaves a corrupt file that must be
+     * recreated from the MS Access source.
+     */
+    BULK_LOAD (
+        /* Must be set before the first table is created to have any effect */
+        "page_size", "4096",
+        "journal_mode", "OFF",
+        "synchronous", "OFF",
+        "cache_size", "100000",
+        "temp_store", "MEMORY",
+        "locking_mode", "EXCLUSIVE"
+    );
+
+    /**
+     * Create a profile from a flat list of PRAGMA name/value pairs.
+     */
+    private PragmaProfile (final String... pragmas) {
+        this.pragmas = pragmas;
+    }
+
+    /**
+     * Apply this profile to the given connection. Must be called outside
+     * of a transaction.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     * @return The previous value of every PRAGMA that was changed, for use with {@link #restore(Connection, Map)}
+     * @throws SQLException
+     */
+    public Map<String, String> apply (final Connection jdbc) throws SQLException {
+        final Map<String, String> previous = new LinkedHashMap<String, String>();
+
+        for (int i = 0; i < pragmas.length; i += 2) {
+            previous.put(pragmas[i], getPragma(jdbc, pragmas[i]));
+            setPragma(jdbc, pragmas[i], pragmas[i + 1]);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Return the value this profile sets for the given PRAGMA.
+     * 
+     * @param name PRAGMA name
+     * @return The value, or null if the profile leaves the PRAGMA untouched.
+     */
+    public String getValue (final String name) {
+        for (int i = 0; i < pragmas.length; i += 2) {
+            if (pragmas[i].equals(name))
+                return pragmas[i + 1];
+        }
+        return null;
+    }
+
+    /**
+     * Restore PRAGMA values previously returned by {@link #apply(Connection)}.
+     * The page size of a populated database can not be changed, and is left as-is.
+     * Must be called outside of a transaction.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     * @param previous PRAGMA values to restore
+     * @throws SQLException
+     */
+    public static void restore (final Connection jdbc, final Map<String, String> previous) throws SQLException {
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            if (entry.getKey().equals("page_size"))
+                continue;
+
+            setPragma(jdbc, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Fetch the current value of a PRAGMA.
+     */
+    private static String getPragma (final Connection jdbc, final String name) throws SQLException {
+        final Statement stmt = jdbc.createStatement();
+        try {
+            final ResultSet rs = stmt.executeQuery("PRAGMA " + name);
+            try {
+                if (rs.next())
+                    return rs.getString(1);
+                return null;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Set the value of a PRAGMA.
+     */
+    private static void setPragma (final Connection jdbc, final String name, final String value) throws SQLException {
+        if (value == null)
+            return;
+
+        final Statement stmt = jdbc.createStatement();
+        try {
+            stmt.execute("PRAGMA " + name + " = " + value);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /** Flattened PRAGMA name/value pairs */
+    private final String[] pragmas;
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * A fixed number of MS Access rows, stored by column.
+ *
+ * Integer, boolean and date columns are held in a long[] and floating point
+ * columns in a double[], so those values are never boxed. Text and binary
+ * columns hold references to the String or byte[] produced by the column's
+ * binder, which are bound as-is; copying them into shared buffers would only
+ * force a second copy when binding. Nulls are recorded in a per-column bitmap.
+ * The batch is cleared and refilled for each group of rows, so its storage
+ * is allocated once per table rather than once per value.
+ */
+final class RowBatch {
+    /** Column values stored as longs */
+    public static final int LONG = 0;
+
+    /** Column values stored as doubles */
+    public static final int DOUBLE = 1;
+
+    /** Column values stored as byte[] references */
+    public static final int BYTES = 2;
+
+    /** Column values stored as String references */
+    public static final int CHARS = 3;
+
+    /**
+     * Create a new, empty batch.
+     * 
+     * @param binders Column binders, in column order. Each binder's storage type determines its column's storage.
+     * @param capacity Maximum number of rows
+     */
+    public RowBatch (final ColumnBinder[] binders, final int capacity) {
+        final int columnCount = binders.length;
+
+        this.binders = binders;
+        this.capacity = capacity;
+        this.storage = new int[columnCount];
+        this.nulls = new long[columnCount][(capacity + 63) / 64];
+        this.longs = new long[columnCount][];
+        this.doubles = new double[columnCount][];
+        this.bytes = new byte[columnCount][][];
+        this.strings = new String[columnCount][];
+        this.rowBytes = new int[capacity];
+
+        for (int i = 0; i < columnCount; i++) {
+            storage[i] = binders[i].getStorage();
+            switch (storage[i]) {
+                case LONG:
+                    longs[i] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubles[i] = new double[capacity];
+                    break;
+                case BYTES:
+                    bytes[i] = new byte[capacity][];
+                    break;
+                case CHARS:
+                    strings[i] = new String[capacity];
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Return the number of rows in the batch.
+     */
+    public int size () {
+        return size;
+    }
+
+    /**
+     * Return the number of columns of each row.
+     */
+    public int columnCount () {
+        return storage.length;
+    }
+
+    /**
+     * Return the maximum number of rows in the batch.
+     */
+    public int capacity () {
+        return capacity;
+    }
+
+    /**
+     * Return true if no more rows may be added.
+     */
+    public boolean isFull () {
+        return size == capacity;
+    }
+
+    /**
+     * Remove all rows, retaining the allocated storage.
+     */
+    public void clear () {
+        for (long[] bitmap : nulls)
+            Arrays.fill(bitmap, 0);
+
+        /* Drop references to the batch's values */
+        for (int i = 0; i < storage.length; i++) {
+            if (bytes[i] != null)
+                Arrays.fill(bytes[i], 0, size, null);
+            else if (strings[i] != null)
+                Arrays.fill(strings[i], 0, size, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Append a row.
+     * 
+     * @param row MS Access row values, in column order. The array is not retained, but
+     * String and byte[] values may be.
+     * @return The approximate size of the row, in bytes.
+     * @throws SQLException
+     * @throws IOException If a value can not be converted to its column's storage.
+     */
+    public int add (final Object[] row) throws SQLException, IOException {
+        if (size == capacity)
+            throw new IllegalStateException("Row batch is full");
+
+        int total = 0;
+        for (ColumnBinder binder : binders)
+            total += binder.store(this, row);
+
+        rowBytes[size++] = total;
+        return total;
+    }
+
+    /**
+     * Return the approximate size of a row, in bytes, as returned by {@link #add(Object[])}.
+     */
+    public int getRowBytes (final int row) {
+        return rowBytes[row];
+    }
+
+    /**
+     * Store a null value in the row being added.
+     */
+    void putNull (final int column) {
+        nulls[column][size >>> 6] |= 1L << size;
+    }
+
+    /**
+     * Store a value in a LONG column of the row being added.
+     */
+    void putLong (final int column, final long value) {
+        longs[column][size] = value;
+    }
+
+    /**
+     * Store a value in a DOUBLE column of the row being added.
+     */
+    void putDouble (final int column, final double value) {
+        doubles[column][size] = value;
+    }
+
+    /**
+     * Store a value in a BYTES column of the row being added. The array is
+     * retained, and must not be modified until the batch is cleared.
+     */
+    void putBytes (final int column, final byte[] value) {
+        bytes[column][size] = value;
+    }
+
+    /**
+     * Store a value in a CHARS column of the row being added.
+     */
+    void putString (final int column, final String value) {
+        strings[column][size] = value;
+    }
+
+    /**
+     * Bind a stored value to a statement parameter.
+     * 
+     * @param prep The INSERT statement
+     * @param index The 1-based statement parameter index
+     * @param column Column position
+     * @param row Row position
+     * @throws SQLException
+     */
+    void bind (final PreparedStatement prep, final int index, final int column, final int row) throws SQLException {
+        if ((nulls[column][row >>> 6] & (1L << row)) != 0) {
+            prep.setNull(index, Types.NULL);
+            return;
+        }
+
+        switch (storage[column]) {
+            case LONG: {
+                /* Bind 32-bit values as ints, as the row binders do; 64-bit binds are costlier in the driver */
+                final long value = longs[column][row];
+                if (value == (int) value)
+                    prep.setInt(index, (int) value);
+                else
+                    prep.setLong(index, value);
+                break;
+            }
+
+            case DOUBLE:
+                prep.setDouble(index, doubles[column][row]);
+                break;
+
+            case BYTES:
+                prep.setBytes(index, bytes[column][row]);
+                break;
+
+            case CHARS:
+                prep.setString(index, strings[column][row]);
+                break;
+        }
+    }
+
+    /**
+     * Append a stored value as an SQL literal.
+     * 
+     * @param out Destination
+     * @param column Column position
+     * @param row Row position
+     */
+    void appendLiteral (final StringBuilder out, final int column, final int row) {
+        if ((nulls[column][row >>> 6] & (1L << row)) != 0) {
+            out.append("NULL");
+            return;
+        }
+
+        switch (storage[column]) {
+            case LONG:
+                out.append(longs[column][row]);
+                break;
+
+            case DOUBLE: {
+                final double value = doubles[column][row];
+                /* SQLite has no literal for NaN, and stores a bound NaN as NULL */
+                if (Double.isNaN(value))
+                    out.append("NULL");
+                else if (Double.isInfinite(value))
+                    out.append(value > 0 ? "1e999" : "-1e999");
+                else
+                    out.append(value);
+                break;
+            }
+
+            case BYTES: {
+                final byte[] value = bytes[column][row];
+                out.append("X'");
+                for (int i = 0; i < value.length; i++) {
+                    out.append(HEX_DIGITS[(value[i] >> 4) & 0xf]);
+                    out.append(HEX_DIGITS[value[i] & 0xf]);
+                }
+                out.append('\'');
+                break;
+            }
+
+            case CHARS: {
+                final String value = strings[column][row];
+                out.append('\'');
+                for (int i = 0; i < value.length(); i++) {
+                    final char c = value.charAt(i);
+                    if (c == '\'')
+                        out.append('\'');
+                    out.append(c);
+                }
+                out.append('\'');
+                break;
+            }
+        }
+    }
+
+    /** Hexadecimal digits, for blob literals */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** Column binders, in column order */
+    private final ColumnBinder[] binders;
+
+    /** Maximum number of rows */
+    private final int capacity;
+
+    /** Storage type of each column */
+    private final int[] storage;
+
+    /** Null bitmap of each column */
+    private final long[][] nulls;
+
+    /** Values of LONG columns; null for other columns */
+    private final long[][] longs;
+
+    /** Values of DOUBLE columns; null for other columns */
+    private final double[][] doubles;
+
+    /** Values of BYTES columns; null for other columns */
+    private final byte[][][] bytes;
+
+    /** Values of CHARS columns; null for other columns */
+    private final String[][] strings;
+
+    /** Approximate size of each row */
+    private final int[] rowBytes;
+
+    /** Number of rows in the batch */
+    private int size;
+}
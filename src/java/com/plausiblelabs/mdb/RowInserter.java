@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes MS Access rows to an SQLite table through prepared INSERT statements.
+ *
+ * Rows passed to {@link #insert(Object[])} may be held back (in a JDBC batch or
+ * a multi-row statement) until the inserter decides to execute them, or
+ * until {@link #flush()} is called.
+ */
+abstract class RowInserter {
+    /**
+     * Create a new inserter.
+     * 
+     * @param tableName MS Access table name
+     * @param binders Column binders, in statement parameter order
+     * @param tracer Phase tracer, or null
+     */
+    protected RowInserter (final String tableName, final ColumnBinder[] binders, final ExportTracer tracer) {
+        this.tableName = tableName;
+        this.binders = binders;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Create an inserter.
+     * 
+     * @param jdbc The SQLite database JDBC connection
+     * @param tableName MS Access table name
+     * @param insertPrefix The INSERT statement up to and including the column list
+     * @param binders Column binders, in statement parameter order
+     * @param batchSize Rows per JDBC batch; 1 executes each row individually
+     * @param multiRow If true, insert several rows per statement. The batch size is ignored.
+     * @param columnar If true, collect each JDBC batch in a {@link RowBatch} and bind it when full.
+     * @param tracer Phase tracer, or null
+     * @throws SQLException
+     */
+    public static RowInserter create (final Connection jdbc, final String tableName, final String insertPrefix,
+            final ColumnBinder[] binders, final int batchSize, final boolean multiRow, final boolean columnar,
+            final ExportTracer tracer) throws SQLException
+    {
+        if (multiRow)
+            return new MultiRowInserter(jdbc, tableName, insertPrefix, binders, tracer);
+        if (columnar)
+            return new ColumnarBatchInserter(jdbc, tableName, insertPrefix, binders, batchSize, tracer);
+        return new BatchInserter(jdbc, tableName, insertPrefix, binders, batchSize, tracer);
+    }
+
+    /**
+     * Return the number of rows that fit in a single statement with the given
+     * number of columns, within SQLite's host parameter and compound SELECT limits.
+     * 
+     * @param columnCount Number of columns per row
+     */
+    public static int rowsPerStatement (final int columnCount) {
+        return Math.max(1, Math.min(SQLITE_MAX_COMPOUND_SELECT, SQLITE_MAX_VARIABLE_NUMBER / Math.max(columnCount, 1)));
+    }
+
+    /**
+     * Insert a row.
+     * 
+     * @param row MS Access row values, in column order. Not retained after the call returns.
+     * @return The approximate size of the row, in bytes.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public abstract int insert (Object[] row) throws SQLException, IOException;
+
+    /**
+     * Execute any rows not yet written.
+     * 
+     * @throws SQLException
+     * @throws IOException
+     */
+    public abstract void flush () throws SQLException, IOException;
+
+    /**
+     * Close all statements. Rows not yet flushed are discarded.
+     * 
+     * @throws SQLException
+     */
+    public abstract void close () throws SQLException;
+
+    /**
+     * Bind a row's values.
+     * 
+     * @param prep The INSERT statement
+     * @param parameterOffset Offset of the row's first parameter
+     * @param row MS Access row values, in column order
+     * @return The approximate size of the row, in bytes.
+     */
+    protected int bindRow (final PreparedStatement prep, final int parameterOffset, final Object[] row) throws SQLException, IOException {
+        int bytes = 0;
+        for (ColumnBinder binder : binders)
+            bytes += binder.bind(prep, parameterOffset, row);
+        return bytes;
+    }
+
+    /**
+     * Bind a batched row's values.
+     * 
+     * @param prep The INSERT statement
+     * @param parameterOffset Offset of the row's first parameter
+     * @param batch Columnar row batch
+     * @param row Row position within the batch
+     */
+    protected void bindRow (final PreparedStatement prep, final int parameterOffset, final RowBatch batch, final int row) throws SQLException {
+        for (ColumnBinder binder : binders)
+            binder.bind(prep, parameterOffset, batch, row);
+    }
+
+    /**
+     * Begin tracing a write of several rows.
+     */
+    protected ExportTracer.Span beginBatch () {
+        return tracer != null ? tracer.beginBatch(tableName) : null;
+    }
+
+    /**
+     * Return a parenthesized list of count parameter placeholders.
+     */
+    protected static String placeholders (final int count) {
+        final StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < count; i++) {
+            builder.append("?");
+            if (i + 1 < count)
+                builder.append(", ");
+        }
+        builder.append(")");
+        return builder.toString();
+    }
+
+    /**
+     * One row per statement, optionally collected into JDBC batches.
+     */
+    private static class BatchInserter extends RowInserter {
+        public BatchInserter (Connection jdbc, String tableName, String insertPrefix, ColumnBinder[] binders,
+                int batchSize, ExportTracer tracer) throws SQLException
+        {
+            super(tableName, binders, tracer);
+            this.prep = jdbc.prepareStatement(insertPrefix + " VALUES " + placeholders(binders.length));
+            this.batchSize = batchSize;
+        }
+
+        public int insert (Object[] row) throws SQLException, IOException {
+            final int bytes = bindRow(prep, 0, row);
+
+            /* Execute the insert, or queue it if batching */
+            if (batchSize == 1) {
+                prep.executeUpdate();
+            } else {
+                prep.addBatch();
+                pendingBytes += bytes;
+                if (++pending == batchSize)
+                    flush();
+            }
+
+            return bytes;
+        }
+
+        public void flush () throws SQLException {
+            if (pending == 0)
+                return;
+
+            final ExportTracer.Span span = beginBatch();
+            prep.executeBatch();
+
+            /* The SQLite JDBC driver does not reset the batch after executing it */
+            prep.clearBatch();
+            if (span != null)
+                span.end(pending, pendingBytes);
+
+            pending = 0;
+            pendingBytes = 0;
+        }
+
+        public void close () throws SQLException {
+            prep.close();
+        }
+
+        /** Single-row INSERT statement */
+        private final PreparedStatement prep;
+
+        /** Rows per batch */
+        private final int batchSize;
+
+        /** Rows in the current batch */
+        private int pending;
+
+        /** Approximate bytes in the current batch */
+        private long pendingBytes;
+    }
+
+    /**
+     * One row per statement, executed in JDBC batches. Rows are held in a
+     * {@link RowBatch} until the batch is full, and bound all at once.
+     */
+    private static class ColumnarBatchInserter extends RowInserter {
+        public ColumnarBatchInserter (Connection jdbc, String tableName, String insertPrefix, ColumnBinder[] binders,
+                int batchSize, ExportTracer tracer) throws SQLException
+        {
+            super(tableName, binders, tracer);
+            this.prep = jdbc.prepareStatement(insertPrefix + " VALUES " + placeholders(binders.length));
+            this.batch = new RowBatch(binders, batchSize);
+        }
+
+        public int insert (Object[] row) throws SQLException, IOException {
+            final int bytes = batch.add(row);
+            pendingBytes += bytes;
+            if (batch.isFull())
+                flush();
+
+            return bytes;
+        }
+
+        public void flush () throws SQLException {
+            final int pending = batch.size();
+            if (pending == 0)
+                return;
+
+            /* Don't mix single and batched executes; the SQLite JDBC driver keeps stale batch parameters */
+            final ExportTracer.Span span = beginBatch();
+            if (batch.capacity() == 1) {
+                bindRow(prep, 0, batch, 0);
+                prep.executeUpdate();
+            } else {
+                for (int i = 0; i < pending; i++) {
+                    bindRow(prep, 0, batch, i);
+                    prep.addBatch();
+                }
+                prep.executeBatch();
+
+                /* The SQLite JDBC driver does not reset the batch after executing it */
+                prep.clearBatch();
+            }
+            if (span != null)
+                span.end(pending, pendingBytes);
+
+            batch.clear();
+            pendingBytes = 0;
+        }
+
+        public void close () throws SQLException {
+            prep.close();
+        }
+
+        /** Single-row INSERT statement */
+        private final PreparedStatement prep;
+
+        /** Rows in the current batch */
+        private final RowBatch batch;
+
+        /** Approximate bytes in the current batch */
+        private long pendingBytes;
+    }
+
+    /**
+     * Several rows per statement. SQLite 3.5 predates multi-row VALUES lists,
+     * so rows are combined with INSERT ... SELECT ... UNION ALL SELECT ....
+     */
+    private static class MultiRowInserter extends RowInserter {
+        public MultiRowInserter (Connection jdbc, String tableName, String insertPrefix, ColumnBinder[] binders,
+                ExportTracer tracer) throws SQLException
+        {
+            super(tableName, binders, tracer);
+            this.jdbc = jdbc;
+            this.insertPrefix = insertPrefix;
+            this.rowsPerStatement = rowsPerStatement(binders.length);
+            this.group = new Object[rowsPerStatement][binders.length];
+            this.prep = jdbc.prepareStatement(statement(rowsPerStatement));
+        }
+
+        public int insert (Object[] row) throws SQLException, IOException {
+            /* Bind eagerly; the row is copied in case the group is flushed early */
+            final int bytes = bindRow(prep, pending * binders.length, row);
+            for (ColumnBinder binder : binders)
+                binder.retain(row, group[pending]);
+            pending++;
+            pendingBytes += bytes;
+
+            if (pending == rowsPerStatement) {
+                final ExportTracer.Span span = beginBatch();
+                prep.executeUpdate();
+                if (span != null)
+                    span.end(pending, pendingBytes);
+                reset();
+            }
+
+            return bytes;
+        }
+
+        public void flush () throws SQLException, IOException {
+            if (pending == 0)
+                return;
+
+            /* Rebind the partial group to a statement of the matching size */
+            PreparedStatement partial = partials.get(pending);
+            if (partial == null) {
+                partial = jdbc.prepareStatement(statement(pending));
+                partials.put(pending, partial);
+            }
+
+            final ExportTracer.Span span = beginBatch();
+            for (int i = 0; i < pending; i++)
+                bindRow(partial, i * binders.length, group[i]);
+            partial.executeUpdate();
+            if (span != null)
+                span.end(pending, pendingBytes);
+
+            reset();
+        }
+
+        public void close () throws SQLException {
+            prep.close();
+            for (PreparedStatement partial : partials.values())
+                partial.close();
+        }
+
+        /**
+         * Return the SQL of a statement inserting the given number of rows.
+         */
+        private String statement (final int rows) {
+            final StringBuilder builder = new StringBuilder(insertPrefix);
+            final String row = placeholders(binders.length);
+            final String select = row.substring(1, row.length() - 1);
+
+            for (int i = 0; i < rows; i++) {
+                builder.append(i == 0 ? " SELECT " : " UNION ALL SELECT ");
+                builder.append(select);
+            }
+            return builder.toString();
+        }
+
+        /**
+         * Start a new group.
+         */
+        private void reset () {
+            /* Drop references to the group's values */
+            for (int i = 0; i < pending; i++)
+                Arrays.fill(group[i], null);
+            pending = 0;
+            pendingBytes = 0;
+        }
+
+        /** The SQLite database JDBC connection */
+        private final Connection jdbc;
+
+        /** The INSERT statement up to and including the column list */
+        private final String insertPrefix;
+
+        /** Rows per full statement */
+        private final int rowsPerStatement;
+
+        /** Copies of the rows bound to the current group */
+        private final Object[][] group;
+
+        /** Full-size INSERT statement */
+        private final PreparedStatement prep;
+
+        /** Statements for partial groups, keyed by row count */
+        private final Map<Integer, PreparedStatement> partials = new HashMap<Integer, PreparedStatement>();
+
+        /** Rows in the current group */
+        private int pending;
+
+        /** Approximate bytes in the current group */
+        private long pendingBytes;
+    }
+
+    /** SQLite's default maximum number of host parameters per statement */
+    private static final int SQLITE_MAX_VARIABLE_NUMBER = 999;
+
+    /** SQLite's default maximum number of terms in a compound SELECT */
+    private static final int SQLITE_MAX_COMPOUND_SELECT = 500;
+
+    /** MS Access table name */
+    protected final String tableName;
+
+    /** Column binders, in statement parameter order */
+    protected final ColumnBinder[] binders;
+
+    /** Phase tracer, or null */
+    protected final ExportTracer tracer;
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads MS Access rows on a background thread and hands them to the
+ * consumer through a bounded queue, so that Jackcess page decoding
+ * overlaps with SQLite inserts.
+ *
+ * Time spent blocked on either side of the queue is recorded: a reader that
+ * mostly waits for space means SQLite is the bottleneck, and a writer that
+ * mostly waits for rows means Jackcess is.
+ */
+class RowPipeline extends RowReader {
+    /**
+     * Start reading rows from the given source.
+     * 
+     * @param source Row source. Must not be accessed by any other thread until the pipeline is closed.
+     * @param name Name of the reader thread
+     * @param depth Maximum number of decoded rows held in the queue.
+     */
+    public RowPipeline (final RowReader source, final String name, final int depth) {
+        this.depth = depth;
+        this.queue = new ArrayBlockingQueue<Object[]>(depth);
+        this.reader = new Thread("RowPipeline-" + name) {
+            public void run () {
+                read(source);
+            }
+        };
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Reader thread body.
+     */
+    private void read (final RowReader source) {
+        final long allocatedStart = AllocationCounter.currentThread();
+        try {
+            Object[] buffer;
+            while ((buffer = source.next()) != null) {
+                /* The source may reuse its buffer; queue a copy */
+                final Object[] row = buffer.clone();
+
+                /* Only time the put if it has to wait */
+                if (!queue.offer(row)) {
+                    final long start = System.nanoTime();
+                    queue.put(row);
+                    readerStallNanos += System.nanoTime() - start;
+                }
+            }
+        } catch (InterruptedException e) {
+            /* Closed by the consumer */
+            return;
+        } catch (Throwable t) {
+            readerFailure = t;
+        } finally {
+            source.close();
+        }
+
+        readerAllocatedBytes = AllocationCounter.since(allocatedStart);
+        try {
+            queue.put(END_OF_ROWS);
+        } catch (InterruptedException e) {
+            /* Closed by the consumer */
+        }
+    }
+
+    public Object[] next () throws IOException {
+        if (finished)
+            return null;
+
+        /* Sample the queue depth before waiting */
+        depthSamples++;
+        depthTotal += queue.size();
+
+        /* Only time the take if it has to wait, as the reader does */
+        Object[] row = queue.poll();
+        if (row == null) {
+            final long start = System.nanoTime();
+            try {
+                row = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for rows");
+            }
+            writerStallNanos += System.nanoTime() - start;
+        }
+
+        if (row != END_OF_ROWS)
+            return row;
+
+        finished = true;
+        if (readerFailure instanceof IOException)
+            throw (IOException) readerFailure;
+        if (readerFailure instanceof RuntimeException)
+            throw (RuntimeException) readerFailure;
+        if (readerFailure instanceof Error)
+            throw (Error) readerFailure;
+        if (readerFailure != null)
+            throw new IllegalStateException(readerFailure);
+        return null;
+    }
+
+    /**
+     * Stop the reader thread, if still running, and wait for it to exit.
+     */
+    public void close () {
+        reader.interrupt();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the queue capacity.
+     */
+    public int getDepth () {
+        return depth;
+    }
+
+    /**
+     * Return the average number of queued rows observed by the consumer.
+     */
+    public double getAverageQueueDepth () {
+        if (depthSamples == 0)
+            return 0;
+        return (double) depthTotal / depthSamples;
+    }
+
+    /**
+     * Return the time, in milliseconds, the reader spent waiting for queue space.
+     * Only valid after the pipeline has been closed.
+     */
+    public long getReaderStallMillis () {
+        return readerStallNanos / 1000000;
+    }
+
+    /**
+     * Return the bytes allocated by the reader thread, or -1 if unknown.
+     * Only valid after the pipeline has been closed.
+     */
+    public long getReaderAllocatedBytes () {
+        return readerAllocatedBytes;
+    }
+
+    /**
+     * Return the time, in milliseconds, the consumer spent waiting for rows.
+     */
+    public long getWriterStallMillis () {
+        return writerStallNanos / 1000000;
+    }
+
+    /** Queue marker signaling the end of the table (or a reader failure) */
+    private static final Object[] END_OF_ROWS = new Object[0];
+
+    /** Queue capacity */
+    private final int depth;
+
+    /** Decoded rows awaiting insertion */
+    private final BlockingQueue<Object[]> queue;
+
+    /** Background reader thread */
+    private final Thread reader;
+
+    /** Failure raised by the reader, if any. Published by the END_OF_ROWS queue hand-off. */
+    private Throwable readerFailure;
+
+    /** Nanoseconds the reader spent blocked on a full queue. Written by the reader thread only. */
+    private long readerStallNanos;
+
+    /** Bytes allocated by the reader thread, or -1 if unknown. Written by the reader thread only. */
+    private long readerAllocatedBytes = -1;
+
+    /** Nanoseconds the consumer spent blocked on an empty queue */
+    private long writerStallNanos;
+
+    /** Sum of the sampled queue depths */
+    private long depthTotal;
+
+    /** Number of queue depth samples */
+    private long depthSamples;
+
+    /** True once the end of the rows has been returned */
+    private boolean finished;
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.Index;
+import com.healthmarketscience.jackcess.Table;
+
+/**
+ * Reads the rows of an MS Access table as arrays of column values,
+ * in {@link Table#getColumns()} order.
+ */
+abstract class RowReader {
+    /**
+     * Create a reader for the given table.
+     * 
+     * @param table MS Access table
+     * @param useCursor If true, read values by column position through a Jackcess
+     * Cursor into a reused buffer, rather than fetching a Map per row.
+     * @param keyOrder If true, return rows in primary key order. Tables without a
+     * primary key index are read in storage order; their rows are not declared with
+     * an INTEGER PRIMARY KEY, so ordering them would not help the insert.
+     * @throws IOException
+     */
+    public static RowReader forTable (final Table table, final boolean useCursor, final boolean keyOrder) throws IOException {
+        if (keyOrder) {
+            final Index primaryKey = AccessExporter.getPrimaryKey(table);
+            if (primaryKey != null)
+                return new CursorRowReader(table, Cursor.createIndexCursor(table, primaryKey));
+        }
+
+        if (useCursor)
+            return new CursorRowReader(table, Cursor.createCursor(table));
+        return new MapRowReader(table);
+    }
+
+    /**
+     * Return the next row, or null if there are no more rows. The returned
+     * array may be overwritten by the following call to next(); callers that
+     * hold on to a row must copy it.
+     * 
+     * @throws IOException
+     */
+    public abstract Object[] next () throws IOException;
+
+    /**
+     * Release any resources held by the reader.
+     */
+    public void close () {
+    }
+
+    /**
+     * Fetches each row as a Map, and copies its values into a reused array.
+     */
+    private static class MapRowReader extends RowReader {
+        public MapRowReader (Table table) {
+            this.table = table;
+            this.columnNames = new String[table.getColumnCount()];
+            this.buffer = new Object[columnNames.length];
+
+            final List<Column> columns = table.getColumns();
+            for (int i = 0; i < columnNames.length; i++)
+                columnNames[i] = columns.get(i).getName();
+
+            table.reset();
+        }
+
+        public Object[] next () throws IOException {
+            final Map<String, Object> row = table.getNextRow();
+            if (row == null)
+                return null;
+
+            for (int i = 0; i < columnNames.length; i++)
+                buffer[i] = row.get(columnNames[i]);
+            return buffer;
+        }
+
+        /** MS Access table */
+        private final Table table;
+
+        /** Column names, by position */
+        private final String[] columnNames;
+
+        /** Reused row buffer */
+        private final Object[] buffer;
+    }
+
+    /**
+     * Reads values directly from the current row of a Cursor, without building a Map.
+     */
+    private static class CursorRowReader extends RowReader {
+        public CursorRowReader (Table table, Cursor cursor) {
+            this.cursor = cursor;
+            this.columns = table.getColumns().toArray(new Column[table.getColumnCount()]);
+            this.buffer = new Object[columns.length];
+        }
+
+        public Object[] next () throws IOException {
+            if (!cursor.moveToNextRow())
+                return null;
+
+            for (int i = 0; i < columns.length; i++)
+                buffer[i] = cursor.getCurrentRowValue(columns[i]);
+            return buffer;
+        }
+
+        /** Table cursor */
+        private final Cursor cursor;
+
+        /** Columns, by position */
+        private final Column[] columns;
+
+        /** Reused row buffer */
+        private final Object[] buffer;
+    }
+}
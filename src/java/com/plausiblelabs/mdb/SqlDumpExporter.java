@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Index;
+import com.healthmarketscience.jackcess.Table;
+
+/**
+ * Writes an MS Access database as an SQL text stream, suitable for loading
+ * with the sqlite3 shell. The schema and values match those written by
+ * {@link AccessExporter}; no JDBC driver is involved.
+ */
+public class SqlDumpExporter {
+    /**
+     * Create a new dump exporter with the provided MS Access
+     * database
+     * 
+     * @param db A reference to an Access database.
+     */
+    public SqlDumpExporter (Database db) {
+        this.db = db;
+        this.schema = new AccessExporter(db);
+    }
+
+    /**
+     * Set the number of rows combined into each INSERT statement. Values
+     * larger than SQLite's compound SELECT limit are capped.
+     *
+     * @param rowsPerStatement Rows per statement.
+     */
+    public void setRowsPerStatement (final int rowsPerStatement) {
+        this.rowsPerStatement = Math.max(1, Math.min(rowsPerStatement, MAX_ROWS_PER_STATEMENT));
+    }
+
+    /**
+     * Set the number of rows written between COMMIT statements.
+     *
+     * @param rowsPerTransaction Rows per transaction, or 0 to write the whole dump
+     * in a single transaction.
+     */
+    public void setRowsPerTransaction (final long rowsPerTransaction) {
+        this.rowsPerTransaction = rowsPerTransaction;
+    }
+
+    /**
+     * Set whether primary keys are declared in the dumped tables.
+     * See {@link AccessExporter#setDeclarePrimaryKeys(boolean)}.
+     *
+     * @param declarePrimaryKeys If true, declare primary keys.
+     */
+    public void setDeclarePrimaryKeys (final boolean declarePrimaryKeys) {
+        schema.setDeclarePrimaryKeys(declarePrimaryKeys);
+    }
+
+    /**
+     * Set whether rows are written in primary key order.
+     * See {@link AccessExporter#setPrimaryKeyOrder(boolean)}.
+     *
+     * @param primaryKeyOrder If true, write rows in primary key order.
+     */
+    public void setPrimaryKeyOrder (final boolean primaryKeyOrder) {
+        this.primaryKeyOrder = primaryKeyOrder;
+        schema.setPrimaryKeyOrder(primaryKeyOrder);
+    }
+
+    /**
+     * Set whether rows are read through a Jackcess Cursor.
+     *
+     * @param cursorReads If true, read rows through a Cursor.
+     */
+    public void setCursorReads (final boolean cursorReads) {
+        this.cursorReads = cursorReads;
+    }
+
+    /**
+     * Set whether BINARY and OLE values are written as-is rather than
+     * Java-serialized.
+     *
+     * @param rawBinary If true, write binary values as-is.
+     */
+    public void setRawBinary (final boolean rawBinary) {
+        this.rawBinary = rawBinary;
+    }
+
+    /**
+     * Write the dump to a file.
+     * 
+     * @param dumpFile Destination file
+     * @param compress If true, gzip the dump.
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void export (final File dumpFile, final boolean compress) throws IOException, SQLException {
+        final OutputStream out = new FileOutputStream(dumpFile);
+        try {
+            export(out, compress);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the dump to a stream. The stream is flushed, but not closed.
+     * 
+     * @param out Destination stream
+     * @param compress If true, gzip the dump.
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void export (final OutputStream out, final boolean compress) throws IOException, SQLException {
+        final GZIPOutputStream gzip = compress ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(gzip != null ? gzip : out, "UTF-8"), BUFFER_SIZE);
+
+        export(writer);
+        if (gzip != null)
+            gzip.finish();
+        out.flush();
+    }
+
+    /**
+     * Write the dump. The writer is flushed, but not closed.
+     * 
+     * @param out Destination
+     * @throws IOException
+     * @throws SQLException
+     */
+    public void export (final Writer out) throws IOException, SQLException {
+        final long startTime = System.nanoTime();
+        long transactionRows = 0;
+
+        out.write("BEGIN TRANSACTION;\n");
+
+        for (String tableName : db.getTableNames())
+            writeStatement(out, schema.getCreateTableStatement(db.getTable(tableName)));
+
+        for (String tableName : db.getTableNames())
+            transactionRows = writeRows(db.getTable(tableName), out, transactionRows);
+
+        /* As with AccessExporter's deferred indexes, each index is built once over the loaded rows */
+        for (String tableName : db.getTableNames()) {
+            for (Index index : db.getTable(tableName).getIndexes()) {
+                if (!schema.isDeclaredPrimaryKey(index))
+                    writeStatement(out, schema.getCreateIndexStatement(index));
+            }
+        }
+
+        out.write("COMMIT;\n");
+        out.flush();
+
+        if (log.isInfoEnabled())
+            log.info(String.format("Wrote SQL dump in %d ms", (System.nanoTime() - startTime) / 1000000));
+    }
+
+    /**
+     * Write the INSERT statements for all rows of a table.
+     * 
+     * @param table MS Access table
+     * @param out Destination
+     * @param transactionRows Rows written since the last COMMIT
+     * @return Rows written since the last COMMIT.
+     * @throws IOException
+     * @throws SQLException
+     */
+    private long writeRows (final Table table, final Writer out, long transactionRows) throws IOException, SQLException {
+        final List<Column> columns = table.getColumns();
+        final ColumnBinder[] binders = ColumnBinder.forColumns(columns, rawBinary, null);
+        final RowBatch batch = new RowBatch(binders, rowsPerStatement);
+        final StringBuilder stmtBuilder = new StringBuilder();
+        final long startTime = System.nanoTime();
+        long rowCount = 0;
+
+        /* Build the INSERT prefix */
+        final StringBuilder prefixBuilder = new StringBuilder();
+        prefixBuilder.append("INSERT INTO " + AccessExporter.escapeIdentifier(table.getName()) + " (");
+        for (int i = 0; i < columns.size(); i++) {
+            prefixBuilder.append(AccessExporter.escapeIdentifier(columns.get(i).getName()));
+            if (i + 1 < columns.size())
+                prefixBuilder.append(", ");
+        }
+        prefixBuilder.append(")");
+        final String insertPrefix = prefixBuilder.toString();
+
+        final RowReader rows = RowReader.forTable(table, cursorReads, primaryKeyOrder);
+        try {
+            Object[] row;
+            while ((row = rows.next()) != null) {
+                batch.add(row);
+                rowCount++;
+                if (!batch.isFull())
+                    continue;
+
+                transactionRows = writeBatch(out, insertPrefix, batch, stmtBuilder, transactionRows);
+            }
+            if (batch.size() > 0)
+                transactionRows = writeBatch(out, insertPrefix, batch, stmtBuilder, transactionRows);
+        } finally {
+            rows.close();
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info(String.format("Dumped table %s: %d rows in %d ms (%d rows/statement)",
+                    table.getName(), rowCount, (System.nanoTime() - startTime) / 1000000, rowsPerStatement));
+        }
+        return transactionRows;
+    }
+
+    /**
+     * Write the batched rows as a single INSERT statement, and clear the batch.
+     * SQLite 3.5 predates multi-row VALUES lists, so rows are combined with
+     * INSERT ... SELECT ... UNION ALL SELECT ....
+     * 
+     * @param out Destination
+     * @param insertPrefix The INSERT INTO clause, with column names
+     * @param batch Rows to write
+     * @param stmtBuilder Reused statement buffer
+     * @param transactionRows Rows written since the last COMMIT
+     * @return Rows written since the last COMMIT.
+     * @throws IOException
+     */
+    private long writeBatch (final Writer out, final String insertPrefix, final RowBatch batch,
+            final StringBuilder stmtBuilder, final long transactionRows) throws IOException
+    {
+        final int columnCount = batch.columnCount();
+        final int rowCount = batch.size();
+
+        stmtBuilder.setLength(0);
+        stmtBuilder.append(insertPrefix);
+        for (int row = 0; row < rowCount; row++) {
+            if (rowCount == 1)
+                stmtBuilder.append(" VALUES (");
+            else
+                stmtBuilder.append(row == 0 ? " SELECT " : " UNION ALL SELECT ");
+
+            for (int column = 0; column < columnCount; column++) {
+                batch.appendLiteral(stmtBuilder, column, row);
+                if (column + 1 < columnCount)
+                    stmtBuilder.append(", ");
+            }
+
+            if (rowCount == 1)
+                stmtBuilder.append(")");
+        }
+        batch.clear();
+        writeStatement(out, stmtBuilder);
+
+        /* Split the load into transactions at statement boundaries */
+        final long total = transactionRows + rowCount;
+        if (rowsPerTransaction > 0 && total >= rowsPerTransaction) {
+            out.write("COMMIT;\nBEGIN TRANSACTION;\n");
+            return 0;
+        }
+        return total;
+    }
+
+    /**
+     * Write a statement, followed by its terminator.
+     */
+    private static void writeStatement (final Writer out, final CharSequence statement) throws IOException {
+        out.append(statement);
+        out.write(";\n");
+    }
+
+    /** Logger */
+    private static final Log log = LogFactory.getLog(SqlDumpExporter.class);
+
+    /** SQLite's default maximum number of terms in a compound SELECT */
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    /** Size of the output and compression buffers */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** MS Access database */
+    private final Database db;
+
+    /** Builds the same DDL as a JDBC export */
+    private final AccessExporter schema;
+
+    /** Rows combined into each INSERT statement */
+    private int rowsPerStatement = 100;
+
+    /** Rows written between COMMIT statements; 0 for a single transaction */
+    private long rowsPerTransaction = 100000;
+
+    /** If true, rows are written in primary key order */
+    private boolean primaryKeyOrder = false;
+
+    /** If true, rows are read through a Jackcess Cursor */
+    private boolean cursorReads = false;
+
+    /** If true, BINARY and OLE values are written as-is */
+    private boolean rawBinary = false;
+}
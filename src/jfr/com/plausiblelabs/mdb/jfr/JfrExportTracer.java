@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import com.plausiblelabs.mdb.ExportTracer;
+
+/**
+ * Emits Java Flight Recorder events for the phases of an export. Events are
+ * only recorded while a recording with them enabled is running, e.g. one
+ * started with -XX:StartFlightRecording.
+ *
+ * Requires Java 11 or later; built separately from the core sources.
+ */
+public class JfrExportTracer implements ExportTracer {
+    public Span beginTable (String tableName) {
+        return begin(new TableEvent(), tableName);
+    }
+
+    public Span beginBatch (String tableName) {
+        return begin(new BatchEvent(), tableName);
+    }
+
+    public Span beginIndex (String tableName, String indexName) {
+        final IndexEvent event = new IndexEvent();
+        event.indexName = indexName;
+        return begin(event, tableName);
+    }
+
+    public Span beginCommit (String tableName) {
+        return begin(new CommitEvent(), tableName);
+    }
+
+    /**
+     * Start timing an event.
+     */
+    private static Span begin (final ExportEvent event, final String tableName) {
+        event.tableName = tableName;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Fields and completion shared by all export events.
+     */
+    @Category({"MDB SQLite", "Export"})
+    @StackTrace(false)
+    private static abstract class ExportEvent extends Event implements Span {
+        public void end (long rows, long bytes) {
+            end();
+            if (shouldCommit()) {
+                this.rows = rows;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+
+        @Label("Table")
+        String tableName;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.plausiblelabs.mdb.TablePopulation")
+    @Label("Table Population")
+    @Description("Copying all rows of an MS Access table into SQLite")
+    private static class TableEvent extends ExportEvent {
+    }
+
+    @Name("com.plausiblelabs.mdb.BatchFlush")
+    @Label("Batch Flush")
+    @Description("Executing a batch of INSERT statements")
+    private static class BatchEvent extends ExportEvent {
+    }
+
+    @Name("com.plausiblelabs.mdb.IndexBuild")
+    @Label("Index Build")
+    @Description("Building an SQLite index from MS Access index metadata")
+    private static class IndexEvent extends ExportEvent {
+        @Label("Index")
+        String indexName;
+    }
+
+    @Name("com.plausiblelabs.mdb.Commit")
+    @Label("Commit")
+    @Description("Committing exported rows")
+    private static class CommitEvent extends ExportEvent {
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2008 Plausible Labs Cooperative, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of any contributors
+ *    may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.plausiblelabs.mdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Table;
+
+/**
+ * JMH version of {@link ExportBenchmark}, measuring createTable,
+ * populateTable and createIndex against the same synthetic MS Access
+ * tables. populateTable and createIndex are reported in rows per second,
+ * and createTable in tables per second. Run it with "ant bench-jmh"; add
+ * "-prof gc" to the JMH arguments for bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportJmhBenchmark {
+    /**
+     * The synthetic MS Access table, generated once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Fixture {
+        @Param({ "10" })
+        public int columns;
+
+        @Param({ "LONG,DOUBLE,TEXT,MEMO,SHORT_DATE_TIME,BOOLEAN" })
+        public String types;
+
+        @Param({ "0" })
+        public double nullRatio;
+
+        /** Insert path: "batch", "columnar" or "multi-row" */
+        @Param({ "batch", "columnar", "multi-row" })
+        public String inserter;
+
+        @Setup(Level.Trial)
+        public void generate () throws IOException, SQLException, ClassNotFoundException {
+            Class.forName("org.sqlite.JDBC");
+
+            mdbFile = File.createTempFile("mdb-sqlite-jmh", ".mdb");
+            db = Database.create(mdbFile);
+            final MdbGenerator generator = new MdbGenerator(0);
+            generator.setNullRatio(nullRatio);
+            table = generator.createTable(db, "benchmark", MdbGenerator.parseTypes(types), columns, ROWS);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete () throws IOException {
+            db.close();
+            mdbFile.delete();
+        }
+
+        /**
+         * Create an exporter configured for the selected insert path.
+         */
+        AccessExporter createExporter () {
+            final AccessExporter exporter = new AccessExporter(db);
+            exporter.setBatchSize(BATCH_SIZE);
+            exporter.setColumnarBatches(inserter.equals("columnar"));
+            exporter.setMultiRowInserts(inserter.equals("multi-row"));
+            return exporter;
+        }
+
+        /** MS Access file */
+        private File mdbFile;
+
+        /** MS Access database */
+        private Database db;
+
+        /** Synthetic MS Access table */
+        Table table;
+    }
+
+    /**
+     * A fresh, empty in-memory SQLite database.
+     */
+    @State(Scope.Thread)
+    public static class EmptyDatabase {
+        @Setup(Level.Invocation)
+        public void create (final Fixture fixture) throws SQLException {
+            exporter = fixture.createExporter();
+            jdbc = DriverManager.getConnection("jdbc:sqlite::memory:");
+            jdbc.setAutoCommit(false);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close () throws SQLException {
+            jdbc.close();
+        }
+
+        /** Exporter under test */
+        AccessExporter exporter;
+
+        /** SQLite connection */
+        Connection jdbc;
+    }
+
+    /**
+     * A fresh in-memory SQLite database holding the empty table.
+     */
+    @State(Scope.Thread)
+    public static class EmptyTable {
+        @Setup(Level.Invocation)
+        public void create (final Fixture fixture) throws IOException, SQLException {
+            exporter = fixture.createExporter();
+            jdbc = DriverManager.getConnection("jdbc:sqlite::memory:");
+            jdbc.setAutoCommit(false);
+            exporter.createTable(fixture.table, jdbc);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close () throws SQLException {
+            jdbc.close();
+        }
+
+        /** Exporter under test */
+        AccessExporter exporter;
+
+        /** SQLite connection */
+        Connection jdbc;
+    }
+
+    /**
+     * A fresh in-memory SQLite database holding the populated table.
+     */
+    @State(Scope.Thread)
+    public static class PopulatedTable {
+        @Setup(Level.Invocation)
+        public void create (final Fixture fixture) throws IOException, SQLException {
+            exporter = fixture.createExporter();
+            jdbc = DriverManager.getConnection("jdbc:sqlite::memory:");
+            jdbc.setAutoCommit(false);
+            exporter.createTable(fixture.table, jdbc);
+            exporter.populateTable(fixture.table, jdbc);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close () throws SQLException {
+            jdbc.close();
+        }
+
+        /** Exporter under test */
+        AccessExporter exporter;
+
+        /** SQLite connection */
+        Connection jdbc;
+    }
+
+    @Benchmark
+    public void createTable (final Fixture fixture, final EmptyDatabase target) throws SQLException {
+        target.exporter.createTable(fixture.table, target.jdbc);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void populateTable (final Fixture fixture, final EmptyTable target) throws IOException, SQLException {
+        target.exporter.populateTable(fixture.table, target.jdbc);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void createIndex (final Fixture fixture, final PopulatedTable target) throws SQLException {
+        final String firstColumn = fixture.table.getColumns().get(0).getName();
+        target.exporter.createIndex(fixture.table.getName(), "benchmark", false,
+                Collections.singletonList(firstColumn), target.jdbc);
+    }
+
+    /** Rows of the synthetic table; a constant, as each row counts as one operation */
+    private static final int ROWS = 100000;
+
+    /** Rows per JDBC batch */
+    private static final int BATCH_SIZE = 1000;
+}